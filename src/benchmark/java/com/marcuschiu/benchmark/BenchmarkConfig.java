@@ -0,0 +1,38 @@
+package com.marcuschiu.benchmark;
+
+import com.marcuschiu.config.data.FlywayConfig;
+import com.marcuschiu.config.data.JPAConfig;
+import com.marcuschiu.config.metrics.MetricsConfig;
+import com.marcuschiu.service.implementation.EmployeeService;
+import com.marcuschiu.service.interfaces.IEmployeeService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * The application's persistence wiring (JPAConfig imports PersistenceConfig, FlywayConfig migrates
+ * the schema) plus EmployeeService, its caches, its change listeners (search index) and its outbox, without the web layer
+ * properties come from benchmark.properties, which points the pools at an in-memory H2 database
+ */
+@Configuration
+@Import({MetricsConfig.class, FlywayConfig.class, JPAConfig.class})
+@ComponentScan(basePackages = {"com.marcuschiu.service.cache", "com.marcuschiu.service.event", "com.marcuschiu.service.search",
+        "com.marcuschiu.service.outbox"})
+public class BenchmarkConfig {
+
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+        PropertySourcesPlaceholderConfigurer properties = new PropertySourcesPlaceholderConfigurer();
+        // system properties (-Djdbc.url=...) still take precedence over the file
+        properties.setLocation(new ClassPathResource("benchmark.properties"));
+        return properties;
+    }
+
+    @Bean
+    public IEmployeeService employeeService() {
+        return new EmployeeService();
+    }
+}
@@ -0,0 +1,387 @@
+package com.marcuschiu.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memcached stand-in inside the JVM, speaking the binary protocol EmployeeMemcachedCache's client is set up with,
+ * so the shared cache tier runs without a real server (SharedCacheBenchmark)
+ * - get, set, add, replace, delete and their quiet variants, noop, version, flush and quit
+ * - flags, expiry and cas are honoured like memcached does, the items are not size bounded
+ * listens on a free port of the loopback interface, see getAddress()
+ */
+public class InProcessMemcached implements Closeable {
+
+    private static final byte MAGIC_REQUEST = (byte) 0x80;
+
+    private static final byte MAGIC_RESPONSE = (byte) 0x81;
+
+    private static final int HEADER_LENGTH = 24;
+
+    // opcodes
+    private static final int GET = 0x00;
+    private static final int SET = 0x01;
+    private static final int ADD = 0x02;
+    private static final int REPLACE = 0x03;
+    private static final int DELETE = 0x04;
+    private static final int QUIT = 0x07;
+    private static final int FLUSH = 0x08;
+    private static final int GETQ = 0x09;
+    private static final int NOOP = 0x0a;
+    private static final int VERSION = 0x0b;
+    private static final int GETK = 0x0c;
+    private static final int GETKQ = 0x0d;
+    private static final int SETQ = 0x11;
+    private static final int ADDQ = 0x12;
+    private static final int REPLACEQ = 0x13;
+    private static final int DELETEQ = 0x14;
+    private static final int QUITQ = 0x17;
+    private static final int FLUSHQ = 0x18;
+
+    // response statuses
+    private static final int OK = 0x0000;
+    private static final int NOT_FOUND = 0x0001;
+    private static final int EXISTS = 0x0002;
+    private static final int UNKNOWN_COMMAND = 0x0081;
+
+    // larger expiries are unix times, like memcached's
+    private static final int MAX_RELATIVE_EXPIRY = (int) TimeUnit.DAYS.toSeconds(30);
+
+    private static final byte[] NONE = new byte[0];
+
+    private final ServerSocket server;
+
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    // guarded by itself, as is cas
+    private final Map<String, Item> items = new HashMap<>();
+
+    private long cas;
+
+    private InProcessMemcached(ServerSocket server) {
+        this.server = server;
+    }
+
+    /**
+     * @return a running stand-in, close() stops it
+     * @throws IOException - no port to listen on
+     */
+    public static InProcessMemcached start() throws IOException {
+        final InProcessMemcached memcached = new InProcessMemcached(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                memcached.accept();
+            }
+        }, "memcached-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return memcached;
+    }
+
+    /**
+     * @return host:port, the format of memcached.url
+     */
+    public String getAddress() {
+        return server.getInetAddress().getHostAddress() + ":" + server.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            final Socket connection;
+            try {
+                connection = server.accept();
+            } catch (IOException e) {
+                // closed
+                return;
+            }
+            connections.add(connection);
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(connection);
+                    } catch (IOException e) {
+                        // the client went away or close() was called
+                    } finally {
+                        connections.remove(connection);
+                        try {
+                            connection.close();
+                        } catch (IOException e) {
+                            // already closed
+                        }
+                    }
+                }
+            }, "memcached-stand-in-" + connection.getPort());
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void serve(Socket connection) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        byte[] header = new byte[HEADER_LENGTH];
+        while (true) {
+            in.readFully(header);
+            ByteBuffer request = ByteBuffer.wrap(header);
+            if (request.get() != MAGIC_REQUEST) {
+                throw new IOException("not a binary protocol request");
+            }
+            int opcode = request.get() & 0xff;
+            int keyLength = request.getShort() & 0xffff;
+            int extrasLength = request.get() & 0xff;
+            request.get(); // data type
+            request.getShort(); // vbucket
+            int bodyLength = request.getInt();
+            int opaque = request.getInt();
+            long requestCas = request.getLong();
+
+            byte[] extras = new byte[extrasLength];
+            in.readFully(extras);
+            byte[] key = new byte[keyLength];
+            in.readFully(key);
+            byte[] value = new byte[bodyLength - keyLength - extrasLength];
+            in.readFully(value);
+
+            if (!handle(new Command(opcode, opaque, requestCas, extras, key, value), out)) {
+                out.flush();
+                return;
+            }
+            // pipelined requests are answered together
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * @return false when the connection is to be closed
+     */
+    private boolean handle(Command command, DataOutputStream out) throws IOException {
+        switch (command.opcode) {
+            case GET:
+            case GETQ:
+            case GETK:
+            case GETKQ:
+                get(command, out);
+                return true;
+            case SET:
+            case SETQ:
+            case ADD:
+            case ADDQ:
+            case REPLACE:
+            case REPLACEQ:
+                store(command, out);
+                return true;
+            case DELETE:
+            case DELETEQ:
+                delete(command, out);
+                return true;
+            case FLUSH:
+            case FLUSHQ:
+                synchronized (items) {
+                    items.clear();
+                }
+                if (command.opcode == FLUSH) {
+                    respond(out, command, OK, 0, NONE, NONE, NONE);
+                }
+                return true;
+            case NOOP:
+                respond(out, command, OK, 0, NONE, NONE, NONE);
+                return true;
+            case VERSION:
+                respond(out, command, OK, 0, NONE, NONE, "1.4.0-stand-in".getBytes(StandardCharsets.US_ASCII));
+                return true;
+            case QUIT:
+            case QUITQ:
+                if (command.opcode == QUIT) {
+                    respond(out, command, OK, 0, NONE, NONE, NONE);
+                }
+                return false;
+            default:
+                respond(out, command, UNKNOWN_COMMAND, 0, NONE, NONE, "Unknown command".getBytes(StandardCharsets.US_ASCII));
+                return true;
+        }
+    }
+
+    private void get(Command command, DataOutputStream out) throws IOException {
+        boolean quiet = command.opcode == GETQ || command.opcode == GETKQ;
+        boolean withKey = command.opcode == GETK || command.opcode == GETKQ;
+        Item item;
+        synchronized (items) {
+            item = live(command.key());
+        }
+        if (item == null) {
+            if (!quiet) {
+                respond(out, command, NOT_FOUND, 0, NONE, withKey ? command.key : NONE, "Not found".getBytes(StandardCharsets.US_ASCII));
+            }
+            return;
+        }
+        byte[] flags = ByteBuffer.allocate(4).putInt(item.flags).array();
+        respond(out, command, OK, item.cas, flags, withKey ? command.key : NONE, item.value);
+    }
+
+    private void store(Command command, DataOutputStream out) throws IOException {
+        boolean add = command.opcode == ADD || command.opcode == ADDQ;
+        boolean replace = command.opcode == REPLACE || command.opcode == REPLACEQ;
+        boolean quiet = command.opcode == SETQ || command.opcode == ADDQ || command.opcode == REPLACEQ;
+        ByteBuffer extras = ByteBuffer.wrap(command.extras);
+        int flags = extras.getInt();
+        long expiresAt = expiresAt(extras.getInt());
+
+        int status;
+        long stored = 0;
+        synchronized (items) {
+            Item current = live(command.key());
+            if (add && current != null) {
+                status = EXISTS;
+            } else if ((replace || command.cas != 0) && current == null) {
+                status = NOT_FOUND;
+            } else if (command.cas != 0 && current.cas != command.cas) {
+                status = EXISTS;
+            } else {
+                stored = ++cas;
+                items.put(command.key(), new Item(flags, command.value, expiresAt, stored));
+                status = OK;
+            }
+        }
+        if (status != OK) {
+            respond(out, command, status, 0, NONE, NONE, message(status));
+        } else if (!quiet) {
+            respond(out, command, OK, stored, NONE, NONE, NONE);
+        }
+    }
+
+    private void delete(Command command, DataOutputStream out) throws IOException {
+        int status;
+        synchronized (items) {
+            Item current = live(command.key());
+            if (current == null) {
+                status = NOT_FOUND;
+            } else if (command.cas != 0 && current.cas != command.cas) {
+                status = EXISTS;
+            } else {
+                items.remove(command.key());
+                status = OK;
+            }
+        }
+        if (status != OK) {
+            respond(out, command, status, 0, NONE, NONE, message(status));
+        } else if (command.opcode == DELETE) {
+            respond(out, command, OK, 0, NONE, NONE, NONE);
+        }
+    }
+
+    /**
+     * under the items lock, expired items are dropped on the way
+     */
+    private Item live(String key) {
+        Item item = items.get(key);
+        if (item != null && item.expiresAt <= System.currentTimeMillis()) {
+            items.remove(key);
+            return null;
+        }
+        return item;
+    }
+
+    private static long expiresAt(int expiry) {
+        if (expiry == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (expiry <= MAX_RELATIVE_EXPIRY) {
+            return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expiry);
+        }
+        return TimeUnit.SECONDS.toMillis(expiry);
+    }
+
+    private static byte[] message(int status) {
+        String message = status == NOT_FOUND ? "Not found" : status == EXISTS ? "Data exists for key." : "Error";
+        return message.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void respond(DataOutputStream out, Command command, int status, long cas,
+                                byte[] extras, byte[] key, byte[] value) throws IOException {
+        out.writeByte(MAGIC_RESPONSE);
+        out.writeByte(command.opcode);
+        out.writeShort(key.length);
+        out.writeByte(extras.length);
+        out.writeByte(0); // data type
+        out.writeShort(status);
+        out.writeInt(extras.length + key.length + value.length);
+        out.writeInt(command.opaque);
+        out.writeLong(cas);
+        out.write(extras);
+        out.write(key);
+        out.write(value);
+    }
+
+    private static final class Command {
+
+        final int opcode;
+
+        final int opaque;
+
+        final long cas;
+
+        final byte[] extras;
+
+        final byte[] key;
+
+        final byte[] value;
+
+        Command(int opcode, int opaque, long cas, byte[] extras, byte[] key, byte[] value) {
+            this.opcode = opcode;
+            this.opaque = opaque;
+            this.cas = cas;
+            this.extras = extras;
+            this.key = key;
+            this.value = value;
+        }
+
+        String key() {
+            return new String(key, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Item {
+
+        final int flags;
+
+        final byte[] value;
+
+        final long expiresAt;
+
+        final long cas;
+
+        Item(int flags, byte[] value, long expiresAt, long cas) {
+            this.flags = flags;
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.cas = cas;
+        }
+    }
+}
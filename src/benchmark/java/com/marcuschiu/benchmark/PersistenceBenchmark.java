@@ -0,0 +1,214 @@
+package com.marcuschiu.benchmark;
+
+import com.marcuschiu.data.model.embeddable.Name;
+import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.data.model.page.KeysetPage;
+import com.marcuschiu.data.model.projection.EmployeeSummary;
+import com.marcuschiu.data.repository.jpa.EmployeeRepository;
+import com.marcuschiu.data.repository.v1.dao.EmployeeDao;
+import com.marcuschiu.service.interfaces.IEmployeeService;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The v1 Hibernate DAO (EmployeeDaoImpl) against the Spring Data EmployeeRepository for the same
+ * operations, plus EmployeeService.isEmployeeSsnUnique, on the real persistence wiring (BenchmarkConfig)
+ * each benchmark runs in its own fork, so it starts from a fresh database seeded with 'rows' employees
+ * the DAO is called in a transaction, the way EmployeeService calls it, the repository as is: its proxy runs
+ * every call in a transaction of the application's "transactionManager" (PersistenceConfig's JpaTransactionManager)
+ * the DAO's ssn lookup goes through the query cache, the repository's does not
+ * servicePage/serviceSummaryPage compare a page of entities (with their phones) to a page of projections
+ * run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="-p rows=10000 PersistenceBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    /**
+     * employees in the database when the benchmark starts
+     */
+    @Param({"1000"})
+    public int rows;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private AnnotationConfigApplicationContext context;
+
+    private EmployeeDao employeeDao;
+
+    private EmployeeRepository employeeRepository;
+
+    private IEmployeeService employeeService;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private TransactionTemplate transaction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfig.class);
+        employeeDao = context.getBean(EmployeeDao.class);
+        employeeRepository = context.getBean(EmployeeRepository.class);
+        employeeService = context.getBean(IEmployeeService.class);
+
+        PlatformTransactionManager transactionManager =
+                context.getBean("transactionManager", PlatformTransactionManager.class);
+        transaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * @return ssn of a random seeded employee
+     */
+    private String randomSsn() {
+        return ssn(ThreadLocalRandom.current().nextInt(rows));
+    }
+
+    private static String ssn(long n) {
+        return "seed-" + n;
+    }
+
+    private Employee newEmployee(String ssn) {
+        Employee employee = new Employee();
+        employee.setName("Benchmark Employee");
+        employee.setSsn(ssn);
+        employee.setJoiningDate(new LocalDate(2015, 1, 1));
+        employee.setBirthDate(new LocalDate(1980, 1, 1));
+        employee.setSalary(new BigDecimal("50000.00"));
+        employee.setText("(555)555-5555");
+        Name name = new Name();
+        name.setFirst("Benchmark");
+        name.setLast("Employee");
+        employee.setNameTwo(name);
+        return employee;
+    }
+
+    /**
+     * inserts 'rows' employees through the DAO's JDBC batch insert
+     */
+    private void seed() {
+        for (int from = 0; from < rows; from += SEED_BATCH_SIZE) {
+            final List<Employee> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int n = from; n < Math.min(rows, from + SEED_BATCH_SIZE); n++) {
+                batch.add(newEmployee(ssn(n)));
+            }
+            transaction.execute(new TransactionCallback<Object>() {
+                @Override
+                public Object doInTransaction(TransactionStatus status) {
+                    employeeDao.batchInsert(batch);
+                    return null;
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public List<Employee> daoFindAll() {
+        return readOnlyTransaction.execute(new TransactionCallback<List<Employee>>() {
+            @Override
+            public List<Employee> doInTransaction(TransactionStatus status) {
+                return employeeDao.findAll();
+            }
+        });
+    }
+
+    @Benchmark
+    public Iterable<Employee> repositoryFindAll() {
+        return employeeRepository.findAll();
+    }
+
+    @Benchmark
+    public Employee daoFindOneBySsn() {
+        final String ssn = randomSsn();
+        return readOnlyTransaction.execute(new TransactionCallback<Employee>() {
+            @Override
+            public Employee doInTransaction(TransactionStatus status) {
+                return employeeDao.findOneBySsn(ssn);
+            }
+        });
+    }
+
+    @Benchmark
+    public Employee repositoryFindBySsn() {
+        return employeeRepository.findBySsn(randomSsn());
+    }
+
+    @Benchmark
+    public Employee daoSave() {
+        final Employee employee = newEmployee("save-" + sequence.incrementAndGet());
+        return transaction.execute(new TransactionCallback<Employee>() {
+            @Override
+            public Employee doInTransaction(TransactionStatus status) {
+                employeeDao.save(employee);
+                return employee;
+            }
+        });
+    }
+
+    @Benchmark
+    public Employee repositorySave() {
+        return employeeRepository.save(newEmployee("save-" + sequence.incrementAndGet()));
+    }
+
+    /**
+     * through the service's own transaction and its ssn near cache
+     */
+    @Benchmark
+    public boolean serviceIsEmployeeSsnUnique() {
+        return employeeService.isEmployeeSsnUnique(null, randomSsn());
+    }
+
+    /**
+     * a page of managed entities, what allemployees.jsp gets
+     */
+    @Benchmark
+    public KeysetPage<Employee> servicePage() {
+        return employeeService.findEmployeePage(ThreadLocalRandom.current().nextInt(rows), null, 50);
+    }
+
+    /**
+     * the same page as projections, what /api/employees gets
+     */
+    @Benchmark
+    public KeysetPage<EmployeeSummary> serviceSummaryPage() {
+        return employeeService.findSummaryPage(ThreadLocalRandom.current().nextInt(rows), null, 50);
+    }
+}
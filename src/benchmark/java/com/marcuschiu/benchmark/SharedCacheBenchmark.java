@@ -0,0 +1,130 @@
+package com.marcuschiu.benchmark;
+
+import com.marcuschiu.data.model.embeddable.Name;
+import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.service.cache.EmployeeMemcachedCache;
+import com.marcuschiu.service.interfaces.IEmployeeService;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EmployeeService's read-throughs with and without the shared cache tier (EmployeeMemcachedCache), which runs
+ * against an InProcessMemcached stand-in instead of a real server
+ * before measuring, setUp checks the tier end to end and fails the trial when it does not work:
+ * a second read is a hit, and after a write the old row is neither served nor cached again (tombstones)
+ * run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="SharedCacheBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedCacheBenchmark {
+
+    /**
+     * employees in the database when the benchmark starts
+     */
+    @Param({"1000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean sharedCache;
+
+    private InProcessMemcached memcached;
+
+    private AnnotationConfigApplicationContext context;
+
+    private IEmployeeService employeeService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // system properties take precedence over benchmark.properties, each trial runs in its own fork
+        if (sharedCache) {
+            memcached = InProcessMemcached.start();
+            System.setProperty("memcached.url", memcached.getAddress());
+        }
+        System.setProperty("memcached.enabled", String.valueOf(sharedCache));
+        context = new AnnotationConfigApplicationContext(BenchmarkConfig.class);
+        employeeService = context.getBean(IEmployeeService.class);
+
+        List<Employee> employees = new ArrayList<>(rows);
+        for (int n = 0; n < rows; n++) {
+            employees.add(newEmployee("shared-" + n));
+        }
+        employeeService.saveEmployees(employees);
+
+        if (sharedCache) {
+            checkSharedCache(context.getBean(EmployeeMemcachedCache.class));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        if (memcached != null) {
+            memcached.close();
+        }
+    }
+
+    private void checkSharedCache(EmployeeMemcachedCache cache) {
+        // a read-through adds the employee (under its id and its ssn), the next read must find it
+        int id = employeeService.findEmployeeBySsn("shared-0").getId();
+        long hits = cache.hitCount();
+        Employee cached = employeeService.findById(id);
+        if (cache.hitCount() != hits + 1) {
+            throw new IllegalStateException("the shared cache tier did not serve a cached employee from " + memcached.getAddress());
+        }
+
+        cached.setSalary(cached.getSalary().add(BigDecimal.ONE));
+        employeeService.updateEmployee(cached, cached.getSsn());
+        for (int read = 0; read < 2; read++) {
+            if (employeeService.findById(id).getVersion() != cached.getVersion() + 1) {
+                throw new IllegalStateException("the shared cache tier served employee " + id + " as it was before an update");
+            }
+        }
+    }
+
+    private static Employee newEmployee(String ssn) {
+        Employee employee = new Employee();
+        employee.setName("Benchmark Employee");
+        employee.setSsn(ssn);
+        employee.setJoiningDate(new LocalDate(2015, 1, 1));
+        employee.setBirthDate(new LocalDate(1980, 1, 1));
+        employee.setSalary(new BigDecimal("50000.00"));
+        employee.setText("(555)555-5555");
+        Name name = new Name();
+        name.setFirst("Benchmark");
+        name.setLast("Employee");
+        employee.setNameTwo(name);
+        return employee;
+    }
+
+    /**
+     * ids of the seeded employees are 1 to rows, the database is fresh
+     */
+    @Benchmark
+    public Employee serviceFindById() {
+        return employeeService.findById(1 + ThreadLocalRandom.current().nextInt(rows));
+    }
+}
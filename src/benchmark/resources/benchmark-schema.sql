@@ -0,0 +1,31 @@
+-- H2 stand-in for flyway/V1_0_0_0__skeleton_setup.sql, run by the jdbc.url's INIT on every new connection
+-- H2 does not accept the migration's "PRIMARY KEY NOT NULL AUTO_INCREMENT" column order, and that applied
+-- migration must not change (its checksum), so the skeleton is created here and Flyway baselines on top of it
+-- (baselineOnMigrate at 1.0.0.0, FlywayConfig) and applies the later migrations as usual
+CREATE TABLE IF NOT EXISTS EMPLOYEE
+(
+    id INT(11) NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(50) NOT NULL,
+    joining_date DATE NOT NULL,
+    salary DOUBLE NOT NULL,
+    ssn VARCHAR(30) NOT NULL,
+    first VARCHAR(50),
+    middle VARCHAR(50),
+    last VARCHAR(50) DEFAULT 'Christ',
+    text VARCHAR(100) NOT NULL,
+    birth_date DATE NOT NULL
+);
+CREATE UNIQUE INDEX IF NOT EXISTS EMPLOYEE_ssn_uindex ON EMPLOYEE (ssn);
+CREATE TABLE IF NOT EXISTS PHONE
+(
+    phone_id INT(11) NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    number VARCHAR(255),
+    employee_id INT(11)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS PHONE_phone_id_uindex ON PHONE (phone_id);
+CREATE TABLE IF NOT EXISTS POST
+(
+    post_id INT(11) NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    text VARCHAR(100) DEFAULT '' NOT NULL
+);
+CREATE UNIQUE INDEX IF NOT EXISTS POST_post_id_uindex ON POST (post_id);
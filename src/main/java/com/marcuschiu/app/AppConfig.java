@@ -1,11 +1,19 @@
 package com.marcuschiu.app;
 
+import com.marcuschiu.config.controller.MVCConfig;
+import com.marcuschiu.config.data.FlywayConfig;
+import com.marcuschiu.config.data.JPAConfig;
+import com.marcuschiu.config.metrics.MetricsConfig;
+import com.marcuschiu.config.service.ServiceConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -15,10 +23,14 @@ import java.util.List;
  * - setting up the config files (which are @Configuration files)
  * - initializing beans
  * @Configuration - indicates this class contains annotated bean method(s)
- * @ComponentScan - refers to package locations to find the associated beans (specifically @Controller)
+ * @Import - the configuration classes, listed instead of scanning com.marcuschiu.config for them at every startup
+ * (JPAConfig imports PersistenceConfig)
+ * @EnableScheduling - runs @Scheduled bean methods (e.g. ReplicaRoutingDataSource.checkReplicaLag,
+ * EmployeeAnalyticsService.scheduledRefresh) on taskScheduler()
  */
 @Configuration
-@ComponentScan(basePackages = {"com.marcuschiu.config"})
+@EnableScheduling
+@Import({MetricsConfig.class, FlywayConfig.class, JPAConfig.class, ServiceConfig.class, MVCConfig.class})
 public class AppConfig {
 
     /**
@@ -38,7 +50,7 @@ public class AppConfig {
         List<Resource> resources = new ArrayList<>();
 
         // standard properties
-        resources.add(new ClassPathResource("properties/system.properties"));
+        resources.add(new ClassPathResource("properties/system/system.properties"));
 
         // user defined properties (overrides standard properties)
         String userPropertiesPath = "properties/system/developer/" + System.getProperty("user.name") + "_system.properties";
@@ -52,5 +64,18 @@ public class AppConfig {
 
         return properties;
     }
-}
 
+    /**
+     * Without it @EnableScheduling runs every task on one thread, a long snapshot refresh
+     * would hold up the replica lag checks
+     * @param poolSize
+     * @return ThreadPoolTaskScheduler
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${scheduling.poolSize:2}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduled-");
+        return scheduler;
+    }
+}
@@ -1,18 +1,37 @@
 package com.marcuschiu.config.controller;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.marcuschiu.controller.async.DatabaseCallExecutor;
+import com.marcuschiu.data.datasource.StatementInspector;
+import com.marcuschiu.metrics.RequestMetricsInterceptor;
+import com.marcuschiu.metrics.StatementInspectionInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.multipart.commons.CommonsMultipartResolver;
 import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
 import org.springframework.web.servlet.view.InternalResourceViewResolver;
 import org.springframework.web.servlet.view.JstlView;
 
+import java.util.List;
+
 /**
  * Created by marcus.chiu on 10/16/16.
  * This is the root Configuration Class
@@ -31,6 +50,29 @@ public class MVCConfig extends WebMvcConfigurationSupport {
 
     private String messageSourcePropertiesPath = "properties/language/en_messages";
 
+    // bulk imports (/employees/import) are the largest uploads
+    @Value("${multipart.maxUploadSize:5242880}")
+    private long maxUploadSize;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Autowired
+    private StatementInspector statementInspector;
+
+    @Value("${jdbc.inspection.enabled:true}")
+    private boolean statementInspectionEnabled;
+
+    // async controller methods (DatabaseCallExecutor), one database thread per pooled connection
+    @Value("${web.async.threads:${jdbc.pool.maximumPoolSize:20}}")
+    private int asyncThreads;
+
+    @Value("${web.async.queueCapacity:100}")
+    private int asyncQueueCapacity;
+
+    @Value("${web.async.timeoutMillis:10000}")
+    private long asyncTimeoutMillis;
+
     ///////////////
     // OVERRIDES //
     ///////////////
@@ -61,10 +103,80 @@ public class MVCConfig extends WebMvcConfigurationSupport {
 //                .addResolver(new PathResourceResolver()); // registering the PathResourceResolver in the resource chain as the sole ResourceResolver in it
     }
 
+    /**
+     * Times every request into http.requests{method,pattern,status}
+     * pattern is the matched @RequestMapping ("/edit-{ssn}-employee"), not the raw URI
+     * and counts its JDBC statements, flagging N+1 loading (see PersistenceConfig.statementInspector)
+     * @param registry
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestMetricsInterceptor(metricRegistry));
+        if (statementInspectionEnabled) {
+            registry.addInterceptor(new StatementInspectionInterceptor(statementInspector, metricRegistry));
+        }
+    }
+
+    /**
+     * Async requests that do not set a timeout of their own (DatabaseCallExecutor does)
+     * get web.async.timeoutMillis instead of the container's default
+     * @param configurer
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(asyncTimeoutMillis);
+    }
+
+    /**
+     * JSON (/api/employees) goes through apiObjectMapper(), registered ahead of the default
+     * converters (the defaults include a Jackson converter with a default ObjectMapper)
+     * @param converters
+     */
+    @Override
+    protected void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
+        MappingJackson2HttpMessageConverter json = new MappingJackson2HttpMessageConverter();
+        json.setObjectMapper(apiObjectMapper());
+        converters.add(json);
+        addDefaultHttpMessageConverters(converters);
+    }
+
     ///////////
     // BEANS //
     ///////////
 
+    /**
+     * ObjectMapper of the JSON API, set up for many large responses
+     * - one instance, its serializers are built once per type and cached
+     * - compact output, nulls left out
+     * - written straight to the response stream as UTF-8, the target is not flushed after every value
+     * - BigDecimal salaries as plain numbers (no exponent)
+     * - annotations/getters only, no field introspection
+     * @return ObjectMapper
+     */
+    @Bean
+    public ObjectMapper apiObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        mapper.disable(SerializationFeature.INDENT_OUTPUT);
+        mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        mapper.disable(MapperFeature.AUTO_DETECT_FIELDS);
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        mapper.configure(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN, true);
+        return mapper;
+    }
+
+    /**
+     * Database threads of the async controller methods, see DatabaseCallExecutor
+     * registered as "web.async.*" by MetricsConfig's MetricSetRegistrar
+     * @return DatabaseCallExecutor
+     */
+    @Bean(name = "web.async")
+    public DatabaseCallExecutor databaseCallExecutor() {
+        return new DatabaseCallExecutor(asyncThreads, asyncQueueCapacity, asyncTimeoutMillis,
+                statementInspectionEnabled ? statementInspector : null);
+    }
+
     /**
      * Configures a html resolver to identify the real html
      * @return ViewResolver
@@ -120,7 +232,7 @@ public class MVCConfig extends WebMvcConfigurationSupport {
         CommonsMultipartResolver commonsMultipartResolver = new CommonsMultipartResolver();
 
         // sets max upload size a client can make to this server
-        commonsMultipartResolver.setMaxUploadSize(5242880);
+        commonsMultipartResolver.setMaxUploadSize(maxUploadSize);
 
         return commonsMultipartResolver;
     }
@@ -1,34 +1,30 @@
 package com.marcuschiu.config.data;
 
+import com.marcuschiu.data.migration.FlywayMigrationRunner;
 import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
 // https://blog.trifork.com/2014/12/09/integrating-flywaydb-in-a-spring-framework-application/
 @Configuration
 public class FlywayConfig {
 
-    @Value("${jdbc.driverClassName}")
-    private String driverClassName;
-
-    @Value("${jdbc.url}")
-    private String url;
-
-    @Value("${jdbc.username}")
-    private String username;
-
-    @Value("${jdbc.password}")
-    private String password;
+    // migrate on a background thread while the rest of the context starts
+    @Value("${flyway.async:true}")
+    private boolean async;
 
+    /**
+     * Migrates on PersistenceConfig's pooled primary DataSource (never on a replica)
+     * only configured here, flywayMigration() runs it
+     * @param dataSource
+     * @return Flyway
+     */
     @Bean
-    public Flyway flyway() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName(driverClassName);
-        dataSource.setUrl(url);
-        dataSource.setUsername(username);
-        dataSource.setPassword(password);
-
+    public Flyway flyway(@Qualifier("primaryDataSource") DataSource dataSource) {
         Flyway flyway = new Flyway();
         flyway.setDataSource(dataSource);
         flyway.setLocations("flyway");
@@ -36,11 +32,19 @@ public class FlywayConfig {
         flyway.setOutOfOrder(false);
         flyway.setBaselineOnMigrate(true);
         flyway.setBaselineVersion("1.0.0.0");
-
-        //Run the migration scripts
-        flyway.migrate();
-
         return flyway;
     }
-}
 
+    /**
+     * entityManagerFactory is @DependsOn("flywayMigration")
+     * - flyway.async=false: the schema is up to date before Hibernate looks at it
+     * - flyway.async=true: Hibernate builds its metadata while the migration runs,
+     *   the context refresh waits for the migration before it completes
+     * @param flyway
+     * @return FlywayMigrationRunner
+     */
+    @Bean
+    public FlywayMigrationRunner flywayMigration(Flyway flyway) {
+        return new FlywayMigrationRunner(flyway, async);
+    }
+}
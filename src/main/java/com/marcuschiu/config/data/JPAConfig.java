@@ -4,54 +4,19 @@ import org.springframework.context.annotation.*;
 import org.springframework.dao.annotation.PersistenceExceptionTranslationPostProcessor;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.orm.hibernate3.HibernateExceptionTranslator;
-import org.springframework.orm.jpa.JpaTransactionManager;
-import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
-import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
-import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
-import javax.persistence.EntityManagerFactory;
-import javax.sql.DataSource;
-import java.sql.SQLException;
-import java.util.Properties;
-
+/**
+ * DAOs and Spring Data repositories on top of PersistenceConfig's persistence unit,
+ * the repositories use its "entityManagerFactory" and "transactionManager" beans
+ */
 @Configuration
 @EnableTransactionManagement
 @ComponentScan(basePackages = "com.marcuschiu.data")
 @EnableJpaRepositories(basePackages = "com.marcuschiu.data.repository")
-@Import(PersistenceConfig.class) // needs DataSource from PersistenceConfig
+@Import(PersistenceConfig.class) // needs the EntityManagerFactory from PersistenceConfig
 public class JPAConfig {
 
-    private String entityPath = "com.marcuschiu.data.model";
-
-    @Bean
-    @DependsOn("dataSource")
-    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) throws SQLException {
-
-        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
-        factory.setDataSource(dataSource);
-        factory.setPackagesToScan(entityPath);
-
-        HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
-        factory.setJpaVendorAdapter(vendorAdapter);
-
-        Properties properties = new Properties();
-        properties.setProperty("hibernate.globally_quoted_identifiers", "true");
-        properties.setProperty("hibernate.dialect", "org.hibernate.dialect.MySQL5Dialect");
-        factory.setJpaProperties(properties);
-        factory.afterPropertiesSet();
-
-        return factory;
-    }
-
-    @Bean
-    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
-        JpaTransactionManager transactionManager = new JpaTransactionManager();
-        transactionManager.setEntityManagerFactory(entityManagerFactory);
-
-        return transactionManager;
-    }
-
     @Bean
     public PersistenceExceptionTranslationPostProcessor exceptionTranslation() {
         return new PersistenceExceptionTranslationPostProcessor();
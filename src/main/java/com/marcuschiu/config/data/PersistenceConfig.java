@@ -1,18 +1,29 @@
 package com.marcuschiu.config.data;
 
-import org.apache.commons.dbcp.BasicDataSource;
+import com.codahale.metrics.MetricRegistry;
+import com.zaxxer.hikari.HikariConfig;
+import com.marcuschiu.data.datasource.ReplicaRoutingDataSource;
+import com.marcuschiu.data.datasource.StatementInspectingDataSource;
+import com.marcuschiu.data.datasource.StatementInspector;
+import com.marcuschiu.metrics.HibernateStatisticsMetricSet;
+import com.zaxxer.hikari.HikariDataSource;
 import org.hibernate.SessionFactory;
+import org.hibernate.jpa.HibernateEntityManagerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
-import org.springframework.orm.hibernate4.HibernateTransactionManager;
-import org.springframework.orm.hibernate4.LocalSessionFactoryBean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.util.StringUtils;
 
+import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
-import java.sql.Connection;
 import java.util.Properties;
 
 /**
@@ -30,7 +41,7 @@ import java.util.Properties;
 @EnableTransactionManagement
 public class PersistenceConfig {
 
-    private String entityPath = "com.marcuschiu.data";
+    private String entityPath = "com.marcuschiu.data.model";
 
     @Value("${jdbc.driverClassName}")
     private String driverClassName;
@@ -44,32 +55,110 @@ public class PersistenceConfig {
     @Value("${jdbc.password}")
     private String password;
 
+    @Value("${jdbc.replica.url:}")
+    private String replicaUrl;
+
+    @Value("${jdbc.replica.username:${jdbc.username}}")
+    private String replicaUsername;
+
+    @Value("${jdbc.replica.password:${jdbc.password}}")
+    private String replicaPassword;
+
+    @Value("${jdbc.replica.maxLagSeconds:5}")
+    private long replicaMaxLagSeconds;
+
+    @Value("${jdbc.pool.minimumIdle:5}")
+    private int poolMinimumIdle;
+
+    @Value("${jdbc.pool.maximumPoolSize:20}")
+    private int poolMaximumSize;
+
+    @Value("${jdbc.pool.connectionTimeoutMillis:3000}")
+    private long poolConnectionTimeout;
+
+    @Value("${jdbc.pool.idleTimeoutMillis:600000}")
+    private long poolIdleTimeout;
+
+    @Value("${jdbc.pool.maxLifetimeMillis:1800000}")
+    private long poolMaxLifetime;
+
+    @Value("${jdbc.pool.validationTimeoutMillis:1000}")
+    private long poolValidationTimeout;
+
+    @Value("${jdbc.pool.connectionTestQuery:}")
+    private String poolConnectionTestQuery;
+
+    @Value("${jdbc.pool.leakDetectionThresholdMillis:30000}")
+    private long poolLeakDetectionThreshold;
+
+    @Value("${jdbc.driverProperties:useServerPrepStmts=true,cachePrepStmts=true,prepStmtCacheSize=250," +
+            "prepStmtCacheSqlLimit=2048,rewriteBatchedStatements=true,useLocalSessionState=true}")
+    private String driverProperties;
+
+    @Value("${jdbc.inspection.enabled:true}")
+    private boolean inspectionEnabled;
+
+    @Value("${jdbc.inspection.slowQueryMillis:200}")
+    private long inspectionSlowQueryMillis;
+
+    @Value("${jdbc.inspection.nPlusOneThreshold:10}")
+    private int inspectionNPlusOneThreshold;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
     @Value("${hibernate.dialect}")
     private String hibernateDialect;
 
-    @Value("${hibernate.show_sql}")
+    @Value("${hibernate.show_sql:false}")
     private Boolean hibernateShowSQL;
 
     @Value("${hibernate.format_sql}")
     private Boolean hibernateFormatSQL;
 
+    @Value("${hibernate.cache.use_second_level_cache:true}")
+    private Boolean hibernateSecondLevelCache;
+
+    @Value("${hibernate.cache.use_query_cache:true}")
+    private Boolean hibernateQueryCache;
+
+    @Value("${hibernate.cache.configurationResourceName:/cache/ehcache.xml}")
+    private String hibernateCacheConfiguration;
+
+    @Value("${hibernate.generate_statistics:true}")
+    private Boolean hibernateStatistics;
+
     /**
-     * This method creates a LocalSessionFactoryBean
-     * This method mirrors exactly the XML based a_configuration
-     * It will be injected into Bean method transactionManager
-     * @return LocalSessionFactoryBean
+     * The one persistence unit of the application, Hibernate builds its metadata once here
+     * - Spring Data repositories (JPAConfig) use it as a JPA EntityManagerFactory
+     * - the v1 DAOs use the Hibernate Session behind the same EntityManager (AbstractDao.getSession)
+     * @return LocalContainerEntityManagerFactoryBean
      */
     @Bean
-    public LocalSessionFactoryBean sessionFactory() {
-        LocalSessionFactoryBean sessionFactory = new LocalSessionFactoryBean();
-        sessionFactory.setDataSource(dataSource());
-        sessionFactory.setPackagesToScan(entityPath);
-        sessionFactory.setHibernateProperties(hibernateProperties());
-        return sessionFactory;
+    @DependsOn("flywayMigration")
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+        LocalContainerEntityManagerFactoryBean entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(dataSource());
+        entityManagerFactory.setPackagesToScan(entityPath);
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setJpaProperties(hibernateProperties());
+        return entityManagerFactory;
     }
 
     /**
-     * This method is called from sessionFactory()
+     * The Hibernate SessionFactory behind entityManagerFactory(), for what needs the native API
+     * (stateless sessions, statistics, cache regions)
+     * destroyMethod is empty, it is closed together with the EntityManagerFactory
+     * @param entityManagerFactory
+     * @return SessionFactory
+     */
+    @Bean(destroyMethod = "")
+    public SessionFactory sessionFactory(EntityManagerFactory entityManagerFactory) {
+        return ((HibernateEntityManagerFactory) entityManagerFactory).getSessionFactory();
+    }
+
+    /**
+     * This method is called from entityManagerFactory()
      * @return Properties -
      */
     private Properties hibernateProperties() {
@@ -79,8 +168,12 @@ public class PersistenceConfig {
         //start - set properties object's configurations
 
         properties.put("hibernate.dialect", hibernateDialect);
-        properties.put("hibernate.show_sql", hibernateShowSQL);
-        properties.put("hibernate.format_sql", hibernateFormatSQL);
+        properties.put("hibernate.show_sql", hibernateShowSQL.toString());
+        properties.put("hibernate.format_sql", hibernateFormatSQL.toString());
+        // named queries are parsed when the factory starts, a broken one fails the startup
+        properties.put("hibernate.query.startup_check", "true");
+        properties.putAll(hibernateCacheProperties());
+        properties.putAll(hibernateStatisticsProperties());
 
         //end
 
@@ -89,89 +182,173 @@ public class PersistenceConfig {
     }
 
     /**
-     * This method is called from sessionFactory()
+     * Second-level (entity/collection) and query cache settings
+     * regions and their eviction/TTL live in cache/ehcache.xml
+     * @return Properties
+     */
+    private Properties hibernateCacheProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.cache.use_second_level_cache", hibernateSecondLevelCache.toString());
+        properties.put("hibernate.cache.use_query_cache", hibernateQueryCache.toString());
+        properties.put("hibernate.cache.region.factory_class", "org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory");
+        properties.put("net.sf.ehcache.configurationResourceName", hibernateCacheConfiguration);
+        // only entities annotated @Cacheable are cached
+        properties.put("javax.persistence.sharedCache.mode", "ENABLE_SELECTIVE");
+        return properties;
+    }
+
+    /**
+     * Statistics (query/entity/cache counts) behind the "hibernate.*" metrics
+     * @return Properties
+     */
+    private Properties hibernateStatisticsProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.generate_statistics", hibernateStatistics.toString());
+        // otherwise every session logs its own statistics at INFO when it closes
+        properties.put("hibernate.session.events.log", "false");
+        return properties;
+    }
+
+    /**
+     * Registered as "hibernate.*" by MetricsConfig's MetricSetRegistrar
+     * @param sessionFactory
+     * @return HibernateStatisticsMetricSet - the persistence unit's statistics
+     */
+    @Bean(name = "hibernate")
+    public HibernateStatisticsMetricSet hibernateMetrics(SessionFactory sessionFactory) {
+        return new HibernateStatisticsMetricSet(sessionFactory.getStatistics());
+    }
+
+    /**
+     * This method is called from entityManagerFactory(), and is what DAOs/repositories get injected
+     * routes each connection to the primary or the replica (see ReplicaRoutingDataSource)
+     * LazyConnectionDataSourceProxy - hands out a placeholder connection and only fetches the real
+     * one at the first statement, by then the transaction's read-only flag is known
+     * StatementInspectingDataSource - (jdbc.inspection.enabled) reports every statement
+     * to the statementInspector
      * @return DataSource - the database connection, source of data, data source
      */
     @Bean
-    @DependsOn("flyway")
+    @Primary
     public DataSource dataSource() {
-        //create new data source object
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource());
+        if (inspectionEnabled) {
+            dataSource = new StatementInspectingDataSource(dataSource, statementInspector());
+        }
+        return dataSource;
+    }
+
+    /**
+     * Times every statement (jdbc.statements metrics), logs the ones slower than
+     * jdbc.inspection.slowQueryMillis and counts statements per request to flag N+1 loading
+     * (MVCConfig opens a scope per request), replaces hibernate.show_sql
+     * @return StatementInspector
+     */
+    @Bean
+    public StatementInspector statementInspector() {
+        return new StatementInspector(metricRegistry, inspectionSlowQueryMillis, inspectionNPlusOneThreshold);
+    }
+
+    /**
+     * Read-only transactions go to the replica pool (jdbc.replica.*) unless it lags
+     * more than jdbc.replica.maxLagSeconds, everything else to the primary
+     * when jdbc.replica.url is empty there is no replica pool and all goes to the primary
+     * @return ReplicaRoutingDataSource
+     */
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource() {
+        DataSource replica = null;
+        if (!replicaUrl.trim().isEmpty()) {
+            replica = pool("replica", replicaUrl, replicaUsername, replicaPassword);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource(), replica, replicaMaxLagSeconds);
+    }
 
-        // DriverManagerDataSource needs group id = 'org.springframework' artifact id = 'spring-jdbc' in maven
-        // DriverManagerDataSource dataSource = new DriverManagerDataSource();
+    /**
+     * The read-write database, FlywayConfig migrates through this one directly
+     * @return DataSource
+     */
+    @Bean
+    public DataSource primaryDataSource() {
+        return pool("primary", url, username, password);
+    }
 
-        // BasicDataSource needs 'commons-dbcp' in maven
-        BasicDataSource dataSource = new BasicDataSource();
+    /**
+     * HikariCP pool, sized and timed by the jdbc.pool.* properties (shared by primary and replica):
+     * - minimumIdle/maximumPoolSize - pool bounds
+     * - connectionTimeoutMillis - how long getConnection() waits for a free connection before failing
+     * - idleTimeoutMillis - idle connections above minimumIdle are closed after this
+     * - maxLifetimeMillis - connections are retired after this (keep below MySQL's wait_timeout)
+     * - validationTimeoutMillis/connectionTestQuery - connections are checked before being handed out,
+     *   with JDBC4 Connection.isValid() when no test query is set
+     * - leakDetectionThresholdMillis - logs the stack of whoever holds a connection longer than this
+     * jdbc.driverProperties are handed to the driver with every new connection, with MySQL Connector/J:
+     * - useServerPrepStmts/cachePrepStmts - statements are prepared (parsed and planned) on the server
+     *   once per connection and reused, prepStmtCacheSize/prepStmtCacheSqlLimit bound that cache
+     * - rewriteBatchedStatements - a JDBC batch of inserts goes out as one multi-row insert
+     * - useLocalSessionState - autocommit/isolation/read-only are not re-sent when they did not change
+     * Pool metrics (active, idle, pending waiters, acquire time histogram "<poolName>.pool.Wait")
+     * go to the MetricRegistry and are exported over JMX
+     * @param poolName - prefix of the pool's metrics
+     * @return HikariDataSource
+     */
+    private HikariDataSource pool(String poolName, String jdbcUrl, String jdbcUsername, String jdbcPassword) {
+        //create new pool configuration object
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
 
         //start - set the data source object's configurations
 
         //set database driver type
-        dataSource.setDriverClassName(driverClassName);
+        config.setDriverClassName(driverClassName);
         //set url of database
-        dataSource.setUrl(url);
+        config.setJdbcUrl(jdbcUrl);
         //set username of database
-        dataSource.setUsername(username);
+        config.setUsername(jdbcUsername);
         //set password of database
-        dataSource.setPassword(password);
-
-        //Prevent MySQL timeouts
-        // http://blog.netgloo.com/2015/07/09/spring-boot-communications-link-failure-with-mysql-and-hibernate/
-//        dataSource.setTestWhileIdle(true);
-//        dataSource.setTimeBetweenEvictionRunsMillis(60000);
-//        dataSource.setValidationQuery("SELECT 1");
-        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        config.setPassword(jdbcPassword);
+        //driver specific settings (prepared statement caching, batch rewriting)
+        Properties properties = StringUtils.splitArrayElementsIntoProperties(
+                StringUtils.commaDelimitedListToStringArray(StringUtils.trimAllWhitespace(driverProperties)), "=");
+        if (properties != null) {
+            config.setDataSourceProperties(properties);
+        }
+
+        //pool sizing, timeouts, validation and leak detection
+        config.setMinimumIdle(poolMinimumIdle);
+        config.setMaximumPoolSize(poolMaximumSize);
+        config.setConnectionTimeout(poolConnectionTimeout);
+        config.setIdleTimeout(poolIdleTimeout);
+        config.setMaxLifetime(poolMaxLifetime);
+        config.setValidationTimeout(poolValidationTimeout);
+        if (!poolConnectionTestQuery.trim().isEmpty()) {
+            config.setConnectionTestQuery(poolConnectionTestQuery);
+        }
+        config.setLeakDetectionThreshold(poolLeakDetectionThreshold);
+
+        config.setTransactionIsolation("TRANSACTION_READ_COMMITTED");
+
+        //observability
+        config.setMetricRegistry(metricRegistry);
+        config.setRegisterMbeans(true);
 
         //end
 
         //return data source object
-        return dataSource;
+        return new HikariDataSource(config);
     }
 
     /**
-     * @param sessionFactory is a bean created from the sessionFactory() Bean method
-     *                       is "Autowired" by Spring
-     * @return HibernateTransactionManager - provide transaction support for the session
-     * created by the sessionFactory
+     * The only transaction manager, @Transactional services and the Spring Data repositories
+     * both run in it, the DAOs' Session is the transaction's EntityManager unwrapped
+     * @param entityManagerFactory is a bean created from the entityManagerFactory() Bean method
+     * @return JpaTransactionManager - provide transaction support for the EntityManagers
+     * created by the entityManagerFactory
      */
     @Bean
-    @Autowired
-    public HibernateTransactionManager transactionManager(SessionFactory sessionFactory) {
-        HibernateTransactionManager txManager = new HibernateTransactionManager();
-        txManager.setSessionFactory(sessionFactory);
+    public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        JpaTransactionManager txManager = new JpaTransactionManager();
+        txManager.setEntityManagerFactory(entityManagerFactory);
         return txManager;
     }
-
-
-    //Bottom two methods for dealing with EntityManagerFactory bean
-
-    @Bean
-    public Properties hibernateProperties2(){
-        final Properties properties = new Properties();
-
-        properties.put( "hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect" );
-        properties.put( "hibernate.connection.driver_class", "org.postgresql.Driver" );
-        properties.put( "hibernate.hbm2ddl.auto", "create-drop" );
-
-        return properties;
-    }
-
-//    /**
-//     * JPA EntityManagerFactory
-//     * @param dataSource
-//     * @return EntityManagerFactory - this creates EntityManager Objects
-//     */
-//    @Bean
-//    public EntityManagerFactory entityManagerFactory( DataSource dataSource){
-//        System.out.println("creating EntityManagerFactory");
-//        final LocalContainerEntityManagerFactoryBean em = new LocalContainerEntityManagerFactoryBean();
-//        em.setDataSource(dataSource);
-//        em.setPackagesToScan("com.kibo.order.data.entity.entity");
-//        em.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
-//        em.setJpaProperties(hibernateProperties());
-//        em.setPersistenceUnitName("mytestdomain");
-//        em.setPersistenceProviderClass(HibernatePersistenceProvider.class);
-//        em.afterPropertiesSet();
-//
-//        return em.getObject();
-//    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package com.marcuschiu.config.metrics;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.marcuschiu.metrics.MethodMetricsInterceptor;
+import com.marcuschiu.metrics.MetricSetRegistrar;
+import com.marcuschiu.metrics.StartupTimingPostProcessor;
+import com.marcuschiu.metrics.TransactionMetricsPostProcessor;
+import com.marcuschiu.service.interfaces.IEmployeeService;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+
+/**
+ * Application wide metrics (Dropwizard Metrics)
+ * components register their gauges/timers/histograms in the MetricRegistry bean,
+ * the JmxReporter exposes all of them as MBeans under the "com.marcuschiu" domain
+ * and MetricsController serves them at /metrics in the Prometheus text format
+ * - http.requests - per controller mapping (MVCConfig's RequestMetricsInterceptor)
+ * - service.calls - per IEmployeeService method
+ * - transactions - begin to commit/rollback of every transaction manager
+ * - hibernate.*, cache.*, search.*, autocomplete.*, outbox.*, web.async.* - MetricSet beans
+ *   registered by the MetricSetRegistrar
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MetricRegistry metricRegistry() {
+        return new MetricRegistry();
+    }
+
+    /**
+     * @param metricRegistry
+     * @return JmxReporter - already started, stopped when the context closes
+     */
+    @Bean(destroyMethod = "stop")
+    public JmxReporter jmxReporter(MetricRegistry metricRegistry) {
+        JmxReporter reporter = JmxReporter.forRegistry(metricRegistry)
+                .inDomain("com.marcuschiu")
+                .build();
+        reporter.start();
+        return reporter;
+    }
+
+    /**
+     * static - post processors are created before the other beans of this class
+     * @return TransactionMetricsPostProcessor - times every PlatformTransactionManager bean
+     */
+    @Bean
+    public static TransactionMetricsPostProcessor transactionMetricsPostProcessor() {
+        return new TransactionMetricsPostProcessor();
+    }
+
+    /**
+     * Logs how long the context took to start, per configuration class and for the slowest beans
+     * @param reportedBeans - startup.report.beans, 0 leaves the bean list out
+     * @return StartupTimingPostProcessor
+     */
+    @Bean
+    public static StartupTimingPostProcessor startupTimingPostProcessor(@Value("${startup.report.beans:15}") int reportedBeans) {
+        return new StartupTimingPostProcessor(reportedBeans);
+    }
+
+    /**
+     * Picked up by the auto proxy creator of @EnableTransactionManagement (infrastructure advisors only)
+     * highest precedence so the timing includes the transaction around the method
+     * @param metricRegistry
+     * @return Advisor - times the IEmployeeService methods
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public Advisor employeeServiceMetricsAdvisor(MetricRegistry metricRegistry) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                MethodMetricsInterceptor.pointcut(IEmployeeService.class),
+                new MethodMetricsInterceptor(metricRegistry, IEmployeeService.class));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+
+    @Bean
+    public MetricSetRegistrar metricSetRegistrar(MetricRegistry metricRegistry) {
+        return new MetricSetRegistrar(metricRegistry);
+    }
+}
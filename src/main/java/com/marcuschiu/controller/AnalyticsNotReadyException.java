@@ -0,0 +1,15 @@
+package com.marcuschiu.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * No employee snapshot has been taken yet (right after startup), answered with 503
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Analytics are starting up, please try again")
+public class AnalyticsNotReadyException extends RuntimeException {
+
+    public AnalyticsNotReadyException(String message) {
+        super(message);
+    }
+}
@@ -1,22 +1,42 @@
 package com.marcuschiu.controller;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.marcuschiu.controller.async.DatabaseCallExecutor;
 import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.data.model.page.KeysetPage;
+import com.marcuschiu.data.model.projection.EmployeeVersion;
 import com.marcuschiu.service.interfaces.IEmployeeService;
+import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
 
+/**
+ * The employee pages run their service calls on the DatabaseCallExecutor (DeferredResult),
+ * a container thread is not held while the database works, pages without database work stay synchronous
+ * reads are answered 503 when they take too long, writes (register, edit, delete) are never timed out
+ */
 @Controller
 public class DefaultController {
 
@@ -26,27 +46,58 @@ public class DefaultController {
     @Autowired
     MessageSource messageSource;
 
+    @Autowired
+    DatabaseCallExecutor databaseCalls;
+
     @RequestMapping(value={"/","","/home"})
     public String home() {
         return "home";
     }
 
     /**
-     * This method will list all existing employees
-     * handles both the default URL '/' and '/list'
-     * handles as handler for initial page of application
-     * This method gets called multiple times during application startup
-     * afterwards it only gets called once for each request
+     * This method will list existing employees, one page at a time
+     * pages are navigated with id cursors (keyset pagination) instead of offsets,
+     * so every page costs the same regardless of how deep into the table it is
+     * conditional GET: the ids and versions of the page are probed first, a client that already has
+     * this page (If-None-Match) gets a 304 without the employees being loaded or the JSP rendered
+     * no Last-Modified, a row deleted from the page does not make the page any newer
+     * @param after - id of the last employee on the previous page
+     * @param before - id of the first employee on the next page (when going back)
+     * @param size - page size, bounded by EmployeeService.MAX_PAGE_SIZE
+     * @param request
+     * @param response
      * @param modelMap
-     * @return String - in this case Spring will find allemployees.jsp
+     * @return DeferredResult - in this case Spring will find allemployees.jsp, or a 304 ResponseEntity
      */
     @RequestMapping(value = {"/employees" }, method = RequestMethod.GET)
-    public String showAllEmployees(HttpServletResponse response, ModelMap modelMap) {
+    public DeferredResult<Object> showAllEmployees(@RequestParam(value = "after", required = false) final Integer after,
+                                                   @RequestParam(value = "before", required = false) final Integer before,
+                                                   @RequestParam(value = "size", required = false) final Integer size,
+                                                   final HttpServletRequest request, final HttpServletResponse response,
+                                                   final ModelMap modelMap) {
         response.setContentType("text/html");
 
-        List<Employee> employees = employeeService.findAllEmployees();
-        modelMap.addAttribute("employees", employees);
-        return "allemployees";
+        return databaseCalls.call(new Callable<Object>() {
+            @Override
+            public Object call() {
+                if (isNotModified(request, pageTag(employeeService.findEmployeePageVersions(after, before, size)), -1)) {
+                    return notModified(response);
+                }
+
+                KeysetPage<Employee> page = employeeService.findEmployeePage(after, before, size);
+                // the tag of what is rendered, it is newer than the probe's when a write came in between
+                List<EmployeeVersion> versions = new ArrayList<>(page.getContent().size());
+                for (Employee employee : page.getContent()) {
+                    versions.add(new EmployeeVersion(employee.getId(), employee.getVersion(), employee.getLastModified()));
+                }
+                setValidators(response, pageTag(new KeysetPage<>(versions, page.getSize(), page.getNextCursor(),
+                        page.getPreviousCursor(), null)), -1);
+
+                modelMap.addAttribute("page", page);
+                modelMap.addAttribute("employees", page.getContent());
+                return "allemployees";
+            }
+        });
     }
 
     /**
@@ -75,102 +126,215 @@ public class DefaultController {
      * @return
      */
     @RequestMapping(value = { "/register" }, method = RequestMethod.POST)
-    public String saveEmployee(@Valid Employee employee, BindingResult bindingResult, ModelMap modelMap) {
-        System.out.println("attempting to save employee");
-
+    public DeferredResult<String> saveEmployee(@Valid final Employee employee, final BindingResult bindingResult,
+                                               final ModelMap modelMap) {
         if (bindingResult.hasErrors()) {
-            System.out.println("bindingResult has errors");
-            return "registration";
+            return DatabaseCallExecutor.completed("registration");
         }
 
-        /*
-         * Preferred way to achieve uniqueness of field [ssn] should be implementing custom @Unique annotation
-         * and applying it on field [ssn] of Model class [Employee].
-         *
-         * Below mentioned peace of code [if block] is to demonstrate that you can fill custom errors outside the validation
-         * framework as well while still using internationalized messages.
-         */
-        if(! employeeService.isEmployeeSsnUnique(employee.getId(), employee.getSsn())){
-            System.out.println("ssn is not unique");
-            FieldError ssnError =new FieldError(
-                    "employee",
-                    "ssn",
-                    messageSource.getMessage(
-                            "non.unique.ssn",
-                            new String[]{employee.getSsn()},
-                            Locale.getDefault()
-                    )
-            );
-            bindingResult.addError(ssnError);
-            return "registration";
-        }
+        return databaseCalls.write(new Callable<String>() {
+            @Override
+            public String call() {
+                /*
+                 * Preferred way to achieve uniqueness of field [ssn] should be implementing custom @Unique annotation
+                 * and applying it on field [ssn] of Model class [Employee].
+                 *
+                 * Below mentioned peace of code [if block] is to demonstrate that you can fill custom errors outside the validation
+                 * framework as well while still using internationalized messages.
+                 */
+                if(! employeeService.isEmployeeSsnUnique(employee.getId(), employee.getSsn())){
+                    bindingResult.addError(nonUniqueSsn(employee));
+                    return "registration";
+                }
 
-        employeeService.saveEmployee(employee);
+                employeeService.saveEmployee(employee);
 
-        modelMap.addAttribute("success", "Employee " + employee.getName() + " registered successfully");
-        return "success";
+                modelMap.addAttribute("success", "Employee " + employee.getName() + " registered successfully");
+                return "success";
+            }
+        });
     }
 
     /**
      * This method will provide the medium to update existing employee
      * Takes you to the registration page with employee details to fill in
+     * conditional GET: the employee's version is probed first (If-None-Match, If-Modified-Since),
+     * an unchanged employee is answered with a 304 without being loaded
      * @param ssn
+     * @param request
+     * @param response
      * @param model
-     * @return
+     * @return DeferredResult - registration.jsp, or a 304 ResponseEntity
      */
     @RequestMapping(value = { "/edit-{ssn}-employee" }, method = RequestMethod.GET)
-    public String editEmployee(@PathVariable String ssn, ModelMap model) {
-        Employee employee = employeeService.findEmployeeBySsn(ssn);
-        model.addAttribute("employee", employee);
-        model.addAttribute("edit", true);
-        return "registration";
+    public DeferredResult<Object> editEmployee(@PathVariable final String ssn, final HttpServletRequest request,
+                                               final HttpServletResponse response, final ModelMap model) {
+        return databaseCalls.call(new Callable<Object>() {
+            @Override
+            public Object call() {
+                EmployeeVersion version = employeeService.findVersionBySsn(ssn);
+                if (version != null && isNotModified(request, employeeTag(version.getId(), version.getVersion()),
+                        millis(version.getLastModified()))) {
+                    return notModified(response);
+                }
+
+                Employee employee = employeeService.findEmployeeBySsn(ssn);
+                if (employee != null) {
+                    // from the employee itself, the caches may still hold an older version than the probe read
+                    setValidators(response, employeeTag(employee.getId(), employee.getVersion()),
+                            millis(employee.getLastModified()));
+                }
+                model.addAttribute("employee", employee);
+                model.addAttribute("edit", true);
+                return "registration";
+            }
+        });
     }
 
     /**
      * This method will be called on form submission, handling POST request for
      * updating employee in database. It also validates the user input
+     * the form carries the version the employee was loaded with, when someone else saved it in the
+     * meantime the form comes back with an error instead of overwriting their changes
      * @param employee
      * @param result
      * @param model
-     * @param ssn
+     * @param ssn - the employee's ssn when the form was loaded
      * @return
      */
     @RequestMapping(value = { "/edit-{ssn}-employee" }, method = RequestMethod.POST)
-    public String updateEmployee(@Valid Employee employee, BindingResult result, ModelMap model, @PathVariable String ssn) {
-        System.out.println("/edit-{ssn}-employee POST");
+    public DeferredResult<String> updateEmployee(@Valid final Employee employee, final BindingResult result,
+                                                 final ModelMap model, @PathVariable final String ssn) {
         if (result.hasErrors()) {
-            return "registration";
+            return DatabaseCallExecutor.completed("registration");
         }
 
-        if(! employeeService.isEmployeeSsnUnique(employee.getId(), employee.getSsn())){
-            FieldError ssnError =new FieldError(
-                    "employee",
-                    "ssn",
-                    messageSource.getMessage(
-                            "non.unique.ssn",
-                            new String[]{employee.getSsn()},
-                            Locale.getDefault()
-                    )
-            );
-            result.addError(ssnError);
-            return "registration";
-        }
+        return databaseCalls.write(new Callable<String>() {
+            @Override
+            public String call() {
+                if(! employeeService.isEmployeeSsnUnique(employee.getId(), employee.getSsn())){
+                    result.addError(nonUniqueSsn(employee));
+                    return "registration";
+                }
 
-        employeeService.updateEmployee(employee);
+                try {
+                    employeeService.updateEmployee(employee, ssn);
+                } catch (OptimisticLockingFailureException e) {
+                    result.addError(new ObjectError("employee", messageSource.getMessage(
+                            "stale.employee", new String[]{ssn}, Locale.getDefault())));
+                    return "registration";
+                }
 
-        model.addAttribute("success", "Employee " + employee.getName()  + " updated successfully");
-        return "success";
+                model.addAttribute("success", "Employee " + employee.getName()  + " updated successfully");
+                return "success";
+            }
+        });
     }
 
     /**
      * This method will delete an employee by its SSN value
      * @param ssn - @PathVariable indicates this parameter will be bound to variable
      *            in URI template
-     * @return String
+     * @return DeferredResult
      */
     @RequestMapping(value = { "/delete-{ssn}-employee" }, method = RequestMethod.GET)
-    public String deleteEmployee(@PathVariable String ssn) {
-        employeeService.deleteEmployeeBySsn(ssn);
-        return "redirect:/employees";
+    public DeferredResult<String> deleteEmployee(@PathVariable final String ssn) {
+        return databaseCalls.write(new Callable<String>() {
+            @Override
+            public String call() {
+                employeeService.deleteEmployeeBySsn(ssn);
+                return "redirect:/employees";
+            }
+        });
+    }
+
+    /**
+     * Compares the request's validators with the current ones, If-None-Match wins over If-Modified-Since
+     * @param request
+     * @param etag - current (weak) ETag
+     * @param lastModified - current modification time, -1 when the resource has none
+     * @return boolean - true when the client's copy is current
+     */
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                // weak comparison, a GET does not need byte-identical bodies
+                if (tag.equals("*") || stripWeak(tag).equals(stripWeak(etag))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (lastModified < 0) {
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            // http dates have seconds only
+            return ifModifiedSince >= 0 && ifModifiedSince >= lastModified / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            // not a date, ignored
+            return false;
+        }
+    }
+
+    /**
+     * The validators of a full response, the client revalidates on every use (no-cache),
+     * that is what the cheap version probe is for
+     */
+    private static void setValidators(HttpServletResponse response, String etag, long lastModified) {
+        response.setHeader("ETag", etag);
+        if (lastModified >= 0) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+        response.setHeader("Cache-Control", "private, no-cache");
+    }
+
+    private static ResponseEntity<Void> notModified(HttpServletResponse response) {
+        response.setHeader("Cache-Control", "private, no-cache");
+        return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static String employeeTag(int id, int version) {
+        return "W/\"employee-" + id + "-" + version + "\"";
+    }
+
+    /**
+     * Hash of the rows of the page (ids and versions) and its paging links
+     * phones are not part of it, nothing in the app changes them without updating their employee
+     * neither is the estimated total: InnoDB's estimate drifts while no row changes, a page would never
+     * be answered with a 304, a revalidated page may show an older estimate
+     */
+    private static String pageTag(KeysetPage<EmployeeVersion> page) {
+        Hasher hasher = Hashing.murmur3_128().newHasher()
+                .putInt(page.getSize())
+                .putInt(page.getNextCursor() == null ? -1 : page.getNextCursor())
+                .putInt(page.getPreviousCursor() == null ? -1 : page.getPreviousCursor());
+        for (EmployeeVersion version : page.getContent()) {
+            hasher.putInt(version.getId()).putInt(version.getVersion());
+        }
+        return "W/\"employees-" + hasher.hash() + "\"";
+    }
+
+    private static long millis(DateTime dateTime) {
+        return dateTime == null ? -1 : dateTime.getMillis();
+    }
+
+    private FieldError nonUniqueSsn(Employee employee) {
+        return new FieldError(
+                "employee",
+                "ssn",
+                messageSource.getMessage(
+                        "non.unique.ssn",
+                        new String[]{employee.getSsn()},
+                        Locale.getDefault()
+                )
+        );
     }
 }
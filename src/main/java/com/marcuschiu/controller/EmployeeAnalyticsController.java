@@ -0,0 +1,31 @@
+package com.marcuschiu.controller;
+
+import com.marcuschiu.service.analytics.SalaryReport;
+import com.marcuschiu.service.interfaces.IEmployeeAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * JSON analytics over the employee snapshot (EmployeeAnalyticsService), no database access,
+ * answered on the request thread
+ * - GET /api/analytics/salaries-by-joining-year
+ */
+@RestController
+@RequestMapping(value = "/api/analytics", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+public class EmployeeAnalyticsController {
+
+    @Autowired
+    IEmployeeAnalyticsService analyticsService;
+
+    @RequestMapping("/salaries-by-joining-year")
+    public SalaryReport salariesByJoiningYear() {
+        SalaryReport report = analyticsService.salariesByJoiningYear();
+        if (report == null) {
+            throw new AnalyticsNotReadyException("no employee snapshot yet");
+        }
+        return report;
+    }
+}
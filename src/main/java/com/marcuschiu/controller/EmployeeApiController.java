@@ -0,0 +1,118 @@
+package com.marcuschiu.controller;
+
+import com.marcuschiu.controller.async.DatabaseCallExecutor;
+import com.marcuschiu.data.model.page.KeysetPage;
+import com.marcuschiu.data.model.projection.EmployeeSummary;
+import com.marcuschiu.service.interfaces.IEmployeeService;
+import com.marcuschiu.service.search.EmployeeSearchHit;
+import com.marcuschiu.service.search.EmployeeSuggestion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * JSON read API over EmployeeSummary projections, no entity is loaded for these
+ * written by MVCConfig's Jackson converter, the database work runs on the DatabaseCallExecutor
+ * - GET /api/employees?after=&before=&size= - KeysetPage of summaries, pass nextCursor as 'after' for the next page
+ *   and previousCursor as 'before' for the previous one
+ * - GET /api/employees/{id}
+ * - GET /api/employees/ssn/{ssn}
+ * - GET /api/employees/search?q=&size= - employees having every word of q in their names or text, best first,
+ *   answered by the in-process search index on the request thread
+ * - GET /api/employees/autocomplete?q=&size= - employees whose names or ssn start with q, for type-ahead,
+ *   answered by the in-process autocomplete index on the request thread
+ * unknown employees are answered with 404
+ */
+@RestController
+@RequestMapping(value = "/api/employees", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+public class EmployeeApiController {
+
+    @Autowired
+    IEmployeeService employeeService;
+
+    @Autowired
+    DatabaseCallExecutor databaseCalls;
+
+    /**
+     * @param after - id of the last employee on the previous page
+     * @param before - id of the first employee on the next page (when going back)
+     * @param size - page size, bounded by EmployeeService.MAX_PAGE_SIZE
+     * @return DeferredResult
+     */
+    @RequestMapping
+    public DeferredResult<KeysetPage<EmployeeSummary>> list(@RequestParam(value = "after", required = false) final Integer after,
+                                                            @RequestParam(value = "before", required = false) final Integer before,
+                                                            @RequestParam(value = "size", required = false) final Integer size) {
+        return databaseCalls.call(new Callable<KeysetPage<EmployeeSummary>>() {
+            @Override
+            public KeysetPage<EmployeeSummary> call() {
+                return employeeService.findSummaryPage(after, before, size);
+            }
+        });
+    }
+
+    @RequestMapping("/{id:\\d+}")
+    public DeferredResult<EmployeeSummary> byId(@PathVariable final int id) {
+        return databaseCalls.call(new Callable<EmployeeSummary>() {
+            @Override
+            public EmployeeSummary call() {
+                return found(employeeService.findSummaryById(id), "id " + id);
+            }
+        });
+    }
+
+    @RequestMapping("/ssn/{ssn}")
+    public DeferredResult<EmployeeSummary> bySsn(@PathVariable final String ssn) {
+        return databaseCalls.call(new Callable<EmployeeSummary>() {
+            @Override
+            public EmployeeSummary call() {
+                return found(employeeService.findSummaryBySsn(ssn), "ssn " + ssn);
+            }
+        });
+    }
+
+    /**
+     * @param q - words to find
+     * @param size - maximum number of hits, bounded by EmployeeService.MAX_PAGE_SIZE
+     * @return List
+     */
+    @RequestMapping("/search")
+    public List<EmployeeSearchHit> search(@RequestParam("q") String q,
+                                          @RequestParam(value = "size", required = false) Integer size) {
+        List<EmployeeSearchHit> hits = employeeService.searchEmployees(q, size);
+        if (hits == null) {
+            throw new SearchNotReadyException("the search index is being built or failed to load");
+        }
+        return hits;
+    }
+
+    /**
+     * @param q - what was typed so far
+     * @param size - maximum number of suggestions, bounded by EmployeeService.MAX_SUGGESTIONS
+     * @return List
+     */
+    @RequestMapping("/autocomplete")
+    public List<EmployeeSuggestion> autocomplete(@RequestParam("q") String q,
+                                                 @RequestParam(value = "size", required = false) Integer size) {
+        List<EmployeeSuggestion> suggestions = employeeService.suggestEmployees(q, size);
+        if (suggestions == null) {
+            throw new SearchNotReadyException("the autocomplete index is being built or failed to load");
+        }
+        return suggestions;
+    }
+
+    private static EmployeeSummary found(EmployeeSummary summary, String key) {
+        if (summary == null) {
+            throw new EmployeeNotFoundException("no employee with " + key);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,15 @@
+package com.marcuschiu.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * No employee with the requested id or ssn, answered with 404
+ */
+@ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "No such employee")
+public class EmployeeNotFoundException extends RuntimeException {
+
+    public EmployeeNotFoundException(String message) {
+        super(message);
+    }
+}
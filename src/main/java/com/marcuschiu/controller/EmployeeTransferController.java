@@ -0,0 +1,92 @@
+package com.marcuschiu.controller;
+
+import com.marcuschiu.service.interfaces.IEmployeeExportService;
+import com.marcuschiu.service.interfaces.IEmployeeImportService;
+import com.marcuschiu.service.transfer.EmployeeFormat;
+import com.marcuschiu.service.transfer.ImportReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bulk transfer of employees in and out of the database (CSV / NDJSON files)
+ */
+@Controller
+public class EmployeeTransferController {
+
+    @Autowired
+    IEmployeeImportService employeeImportService;
+
+    @Autowired
+    IEmployeeExportService employeeExportService;
+
+    /**
+     * Shows the upload form
+     * @return String - import.jsp
+     */
+    @RequestMapping(value = { "/employees/import" }, method = RequestMethod.GET)
+    public String importForm() {
+        return "import";
+    }
+
+    /**
+     * Imports an uploaded CSV or NDJSON file (multipart, goes through MVCConfig's multipartResolver)
+     * the file is streamed, not read into memory
+     * @param file - the uploaded file
+     * @param format - csv or ndjson, guessed from the file name when missing
+     * @param modelMap
+     * @return String - import.jsp with the ImportReport
+     * @throws IOException
+     */
+    @RequestMapping(value = { "/employees/import" }, method = RequestMethod.POST)
+    public String importEmployees(@RequestParam("file") MultipartFile file,
+                                  @RequestParam(value = "format", required = false) String format,
+                                  ModelMap modelMap) throws IOException {
+        if (file.isEmpty()) {
+            modelMap.addAttribute("error", "Please choose a file to import");
+            return "import";
+        }
+
+        EmployeeFormat employeeFormat;
+        try {
+            employeeFormat = EmployeeFormat.resolve(format, file.getOriginalFilename());
+        } catch (IllegalArgumentException e) {
+            modelMap.addAttribute("error", "Unknown format " + format);
+            return "import";
+        }
+
+        try (InputStream in = file.getInputStream()) {
+            ImportReport report = employeeImportService.importEmployees(in, employeeFormat);
+            modelMap.addAttribute("report", report);
+        }
+        return "import";
+    }
+
+    /**
+     * Downloads every employee as CSV or NDJSON
+     * rows are written to the response as they are read from the database,
+     * nothing is buffered besides the output stream's own buffer
+     * @param format - csv (default) or ndjson
+     * @param response
+     * @throws IOException
+     */
+    @RequestMapping(value = { "/employees/export" }, method = RequestMethod.GET)
+    public void exportEmployees(@RequestParam(value = "format", required = false) String format,
+                                HttpServletResponse response) throws IOException {
+        EmployeeFormat employeeFormat = EmployeeFormat.resolve(format, null);
+
+        response.setContentType(employeeFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"employees." + employeeFormat.getExtension() + "\"");
+
+        employeeExportService.exportEmployees(response.getOutputStream(), employeeFormat);
+    }
+}
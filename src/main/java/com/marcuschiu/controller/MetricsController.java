@@ -0,0 +1,33 @@
+package com.marcuschiu.controller;
+
+import com.codahale.metrics.MetricRegistry;
+import com.marcuschiu.metrics.PrometheusTextWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Scrape endpoint, everything in the MetricRegistry (see MetricsConfig) in the Prometheus text format
+ */
+@Controller
+public class MetricsController {
+
+    @Autowired
+    MetricRegistry metricRegistry;
+
+    /**
+     * Written straight to the response, no view and no model
+     * @param response
+     * @throws IOException
+     */
+    @RequestMapping(value = { "/metrics" }, method = RequestMethod.GET)
+    public void metrics(HttpServletResponse response) throws IOException {
+        response.setContentType(PrometheusTextWriter.CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        PrometheusTextWriter.write(metricRegistry, response.getWriter());
+    }
+}
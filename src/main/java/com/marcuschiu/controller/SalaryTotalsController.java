@@ -0,0 +1,50 @@
+package com.marcuschiu.controller;
+
+import com.marcuschiu.controller.async.DatabaseCallExecutor;
+import com.marcuschiu.data.model.entity.SalaryTotals;
+import com.marcuschiu.service.interfaces.ISalaryTotalsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * JSON headcount and payroll by joining year from the summary table (SalaryTotalsService)
+ * - GET /api/salary-totals/by-joining-year - reads the summary rows only, on the DatabaseCallExecutor
+ * - POST /api/salary-totals/by-joining-year/rebuild - recomputes them from the employees (drift repair)
+ */
+@RestController
+@RequestMapping(value = "/api/salary-totals/by-joining-year", produces = MediaType.APPLICATION_JSON_VALUE)
+public class SalaryTotalsController {
+
+    @Autowired
+    ISalaryTotalsService salaryTotalsService;
+
+    @Autowired
+    DatabaseCallExecutor databaseCalls;
+
+    @RequestMapping(method = RequestMethod.GET)
+    public DeferredResult<List<SalaryTotals>> byJoiningYear() {
+        return databaseCalls.call(new Callable<List<SalaryTotals>>() {
+            @Override
+            public List<SalaryTotals> call() {
+                return salaryTotalsService.findSalaryTotalsByJoiningYear();
+            }
+        });
+    }
+
+    /**
+     * Runs on the request thread like the export, a rebuild reads the whole EMPLOYEE table and would
+     * outlast the DatabaseCallExecutor's timeout
+     * @return the rebuilt totals
+     */
+    @RequestMapping(value = "/rebuild", method = RequestMethod.POST)
+    public List<SalaryTotals> rebuild() {
+        return salaryTotalsService.rebuildSalaryTotals();
+    }
+}
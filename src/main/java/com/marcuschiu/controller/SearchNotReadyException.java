@@ -0,0 +1,16 @@
+package com.marcuschiu.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The search or autocomplete index is still being built (right after startup), or its build failed,
+ * answered with 503
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Search is starting up, please try again")
+public class SearchNotReadyException extends RuntimeException {
+
+    public SearchNotReadyException(String message) {
+        super(message);
+    }
+}
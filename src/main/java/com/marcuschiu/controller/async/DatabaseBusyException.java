@@ -0,0 +1,18 @@
+package com.marcuschiu.controller.async;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A database call of a request could not run in time: the DatabaseCallExecutor queue was full
+ * or the call was still queued/running when the request timed out
+ * answered with 503 so clients (and load balancers) back off instead of piling up more work
+ * no stack trace, it is raised under load and the trace would always be the executor's
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "The database is busy, please try again")
+public class DatabaseBusyException extends RuntimeException {
+
+    public DatabaseBusyException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,192 @@
+package com.marcuschiu.controller.async;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+import com.marcuschiu.data.datasource.StatementInspector;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the database work of async controller methods off the servlet container threads
+ * - as many threads as the connection pool has connections, more threads would only wait for a connection
+ * - a bounded queue, a full queue fails the request right away with a DatabaseBusyException (503)
+ *   instead of parking it until the pool frees up
+ * - a timeout per read, a read not finished in time answers 503 as well, a read still queued by then
+ *   never runs
+ * - writes (write()) have no timeout: a running write cannot be stopped, it would commit after the client
+ *   was told it failed and a retry would apply it twice, the request waits for its outcome instead
+ * so a slow database only slows down the requests that need it, the container threads stay free
+ * for the rest (/home, static resources)
+ * the database thread counts a call's statements in a StatementInspector scope of its own and adds it to
+ * the request's scope before completing the request, not after a timeout: the request has moved on by then
+ * registered as "web.async.*" by MetricsConfig's MetricSetRegistrar:
+ * active, queued, queueWait, rejected, timeouts
+ */
+public class DatabaseCallExecutor implements MetricSet, DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutMillis;
+
+    private final StatementInspector inspector;
+
+    private final Timer queueWait = new Timer();
+
+    private final Counter rejected = new Counter();
+
+    private final Counter timeouts = new Counter();
+
+    /**
+     * @param threads - database threads, size of the connection pool
+     * @param queueCapacity - calls waiting for a thread before new ones are rejected
+     * @param timeoutMillis - time a call has from being submitted to finishing
+     * @param inspector - null when statement inspection is disabled
+     */
+    public DatabaseCallExecutor(int threads, int queueCapacity, long timeoutMillis, StatementInspector inspector) {
+        this.timeoutMillis = timeoutMillis;
+        this.inspector = inspector;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "db-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // idle threads go away, a quiet app does not keep the whole pool around
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs a read on a database thread
+     * @param call - the service calls of a controller method, returns what the method would have returned
+     * @param <T>
+     * @return DeferredResult - return it from the controller method, the request completes with the call's
+     * result, its exception, or a DatabaseBusyException on timeout
+     * @throws DatabaseBusyException - when the queue is full, before the request went async
+     */
+    public <T> DeferredResult<T> call(final Callable<T> call) {
+        final DeferredResult<T> result = new DeferredResult<>(timeoutMillis);
+        final Future<?> future = submit(call, result);
+        result.onTimeout(new Runnable() {
+            @Override
+            public void run() {
+                timeouts.inc();
+                result.setErrorResult(new DatabaseBusyException("database call did not finish within " + timeoutMillis + " ms"));
+                // still queued: drop it, running: let it finish, its result is ignored
+                future.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs a write on a database thread, like call() but without a timeout (0: the container's
+     * async timeout does not apply either), the request completes with the write's outcome
+     * @param call
+     * @param <T>
+     * @return DeferredResult
+     * @throws DatabaseBusyException - when the queue is full, nothing was written
+     */
+    public <T> DeferredResult<T> write(final Callable<T> call) {
+        DeferredResult<T> result = new DeferredResult<>(0L);
+        submit(call, result);
+        return result;
+    }
+
+    private <T> Future<?> submit(final Callable<T> call, final DeferredResult<T> result) {
+        final StatementInspector.Scope requestScope = inspector == null ? null : inspector.scope();
+        final long submitted = System.nanoTime();
+
+        try {
+            return executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    queueWait.update(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                    if (result.isSetOrExpired()) {
+                        return;
+                    }
+                    StatementInspector.Scope scope = requestScope == null ? null : new StatementInspector.Scope();
+                    StatementInspector.Scope previous = inspector == null ? null : inspector.attach(scope);
+                    try {
+                        T value = call.call();
+                        addStatements(scope, requestScope, result);
+                        result.setResult(value);
+                    } catch (Exception e) {
+                        addStatements(scope, requestScope, result);
+                        result.setErrorResult(e);
+                    } finally {
+                        if (inspector != null) {
+                            inspector.attach(previous);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.inc();
+            throw new DatabaseBusyException("database call queue is full (" + executor.getQueue().size() + " waiting)");
+        }
+    }
+
+    /**
+     * @param scope - the database thread's statements, null when not inspected
+     * @param requestScope - left alone once the request timed out
+     * @param result
+     */
+    private static void addStatements(StatementInspector.Scope scope, StatementInspector.Scope requestScope,
+                                      DeferredResult<?> result) {
+        if (scope != null && !result.isSetOrExpired()) {
+            requestScope.add(scope);
+        }
+    }
+
+    /**
+     * @param value
+     * @param <T>
+     * @return DeferredResult - already holding value, for the paths of an async method that need no database
+     */
+    public static <T> DeferredResult<T> completed(T value) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.setResult(value);
+        return result;
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+        metrics.put("active", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() { return executor.getActiveCount(); }
+        });
+        metrics.put("queued", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() { return executor.getQueue().size(); }
+        });
+        metrics.put("queueWait", queueWait);
+        metrics.put("rejected", rejected);
+        metrics.put("timeouts", timeouts);
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
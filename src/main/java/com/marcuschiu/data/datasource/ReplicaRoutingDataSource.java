@@ -0,0 +1,136 @@
+package com.marcuschiu.data.datasource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends connections of read-only transactions (@Transactional(readOnly = true)) to the
+ * replica and everything else to the primary
+ * - the routing decision is made when the connection is fetched, so this must sit behind a
+ *   LazyConnectionDataSourceProxy: only then is the transaction's read-only flag already known
+ * - checkReplicaLag() runs on a schedule, while the replica is further behind than
+ *   maxLagSeconds (or cannot be checked) read-only work falls back to the primary
+ * - without a replica every connection comes from the primary
+ * - rows read from the replica are not cached, a cached pre-write row would outlive the lag by the cache's TTL:
+ *   read-only sessions do not fill the second-level and query caches (AbstractDao.getSession) and the
+ *   read-throughs of EmployeeService's caches load from the primary
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final Log log = LogFactory.getLog(ReplicaRoutingDataSource.class);
+
+    public static final String PRIMARY = "primary";
+
+    public static final String REPLICA = "replica";
+
+    private final DataSource replica;
+
+    private final long maxLagSeconds;
+
+    private volatile boolean replicaUsable;
+
+    private volatile long replicaLagSeconds = -1;
+
+    /**
+     * @param primary - read-write database
+     * @param replica - read-only copy, null when there is none
+     * @param maxLagSeconds - replication lag above which reads go to the primary
+     */
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, long maxLagSeconds) {
+        this.replica = replica;
+        this.maxLagSeconds = maxLagSeconds;
+        this.replicaUsable = replica != null;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        if (replica != null) {
+            targets.put(REPLICA, replica);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaUsable && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return REPLICA;
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Reads the replica's Seconds_Behind_Master, a replica that reports no lag
+     * (replication stopped) or fails the check is treated as too far behind
+     * a database that is not a replica at all (no slave status) is treated as up to date
+     */
+    @Scheduled(fixedDelayString = "${jdbc.replica.lagCheckMillis:5000}")
+    public void checkReplicaLag() {
+        if (replica == null) {
+            return;
+        }
+
+        long lag;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet status = statement.executeQuery("SHOW SLAVE STATUS")) {
+            if (status.next()) {
+                lag = status.getLong("Seconds_Behind_Master");
+                if (status.wasNull()) {
+                    lag = Long.MAX_VALUE;
+                }
+            } else {
+                lag = 0;
+            }
+        } catch (SQLException e) {
+            log.warn("replica lag check failed, routing reads to the primary: " + e.getMessage());
+            lag = Long.MAX_VALUE;
+        }
+
+        boolean usable = lag <= maxLagSeconds;
+        if (usable != replicaUsable) {
+            log.info(usable
+                    ? "replica caught up (" + lag + "s behind), routing reads to it again"
+                    : "replica lag over " + maxLagSeconds + "s, routing reads to the primary");
+        }
+        replicaLagSeconds = lag == Long.MAX_VALUE ? -1 : lag;
+        replicaUsable = usable;
+    }
+
+    /**
+     * @return true while read-only transactions are sent to the replica
+     */
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    /**
+     * @return last measured lag in seconds, -1 when unknown
+     */
+    public long getReplicaLagSeconds() {
+        return replicaLagSeconds;
+    }
+
+    /**
+     * The replica pool is owned by this data source (it is not a bean of its own)
+     */
+    @Override
+    public void destroy() throws IOException {
+        if (replica instanceof Closeable) {
+            ((Closeable) replica).close();
+        }
+    }
+}
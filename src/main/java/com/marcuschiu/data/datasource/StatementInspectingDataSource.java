@@ -0,0 +1,207 @@
+package com.marcuschiu.data.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hands out connections whose statements report every execute to a StatementInspector
+ * (sql, bind parameter shape, duration)
+ * the connections and statements are JDK proxies around the real ones, everything except
+ * the execute/addBatch/set* bookkeeping goes straight to the driver
+ */
+public class StatementInspectingDataSource extends DelegatingDataSource {
+
+    private final StatementInspector inspector;
+
+    public StatementInspectingDataSource(DataSource targetDataSource, StatementInspector inspector) {
+        super(targetDataSource);
+        this.inspector = inspector;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return inspect(getTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return inspect(getTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection inspect(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(StatementInspectingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * equals/hashCode by proxy identity (Hibernate keys its open statements by them),
+     * unwrap/isWrapperFor answered by the proxy itself when it already is the requested type
+     * @return Object - the answer, null when the call is none of these
+     */
+    private static Object proxyCall(Object proxy, Method method, Object[] args) {
+        if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+            return proxy == args[0];
+        }
+        if ("hashCode".equals(method.getName()) && args == null) {
+            return System.identityHashCode(proxy);
+        }
+        if (args == null || args.length != 1 || !(args[0] instanceof Class) || !((Class<?>) args[0]).isInstance(proxy)) {
+            return null;
+        }
+        if ("unwrap".equals(method.getName())) {
+            return proxy;
+        }
+        if ("isWrapperFor".equals(method.getName())) {
+            return Boolean.TRUE;
+        }
+        return null;
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object answer = proxyCall(proxy, method, args);
+            if (answer != null) {
+                return answer;
+            }
+
+            Object result = StatementInspectingDataSource.invoke(connection, method, args);
+            String name = method.getName();
+            if ("createStatement".equals(name)) {
+                return statement(Statement.class, (Statement) result, null);
+            }
+            if ("prepareStatement".equals(name)) {
+                return statement(PreparedStatement.class, (Statement) result, (String) args[0]);
+            }
+            if ("prepareCall".equals(name)) {
+                return statement(CallableStatement.class, (Statement) result, (String) args[0]);
+            }
+            return result;
+        }
+
+        private Object statement(Class<?> type, Statement statement, String sql) {
+            return Proxy.newProxyInstance(StatementInspectingDataSource.class.getClassLoader(),
+                    new Class<?>[]{type}, new StatementHandler(statement, sql));
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+
+        /**
+         * sql of a prepared statement, null for a plain Statement
+         */
+        private final String preparedSql;
+
+        private final Map<Integer, String> parameterTypes = new TreeMap<>();
+
+        private String batchSql;
+
+        private String batchShape = "";
+
+        private int batchSize;
+
+        StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object answer = proxyCall(proxy, method, args);
+            if (answer != null) {
+                return answer;
+            }
+
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+
+            if (preparedSql != null && name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameterTypes.put((Integer) args[0],
+                        "setNull".equals(name) || args[1] == null ? "null" : args[1].getClass().getSimpleName());
+            } else if ("clearParameters".equals(name)) {
+                parameterTypes.clear();
+            } else if ("addBatch".equals(name)) {
+                if (batchSize == 0) {
+                    batchSql = args != null && args.length == 1 ? (String) args[0] : preparedSql;
+                    batchShape = shape();
+                }
+                batchSize++;
+            } else if ("clearBatch".equals(name)) {
+                batchSql = null;
+                batchSize = 0;
+            }
+            return StatementInspectingDataSource.invoke(statement, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String sql;
+            String parameters;
+            if (method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch")) {
+                sql = batchSql;
+                parameters = "batch of " + batchSize + (batchShape.isEmpty() ? "" : " x " + batchShape);
+                batchSql = null;
+                batchSize = 0;
+            } else {
+                sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+                parameters = shape();
+            }
+
+            long start = System.nanoTime();
+            try {
+                return StatementInspectingDataSource.invoke(statement, method, args);
+            } finally {
+                if (sql != null) {
+                    inspector.executed(sql, parameters, System.nanoTime() - start);
+                }
+            }
+        }
+
+        /**
+         * @return String - "(String, Integer, null)" in parameter order, empty without parameters
+         */
+        private String shape() {
+            if (parameterTypes.isEmpty()) {
+                return "";
+            }
+            StringBuilder shape = new StringBuilder("(");
+            for (String type : parameterTypes.values()) {
+                if (shape.length() > 1) {
+                    shape.append(", ");
+                }
+                shape.append(type);
+            }
+            return shape.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.marcuschiu.data.datasource;
+
+import com.codahale.metrics.MetricRegistry;
+import com.marcuschiu.metrics.MetricNames;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives every JDBC statement executed through a StatementInspectingDataSource
+ * - times it into jdbc.statements{type="select|insert|update|delete|other"}
+ * - logs statements slower than slowQueryMillis with the shape of their bind parameters
+ *   (types and counts, never the values, they can hold ssns)
+ * - inside a scope (one per HTTP request, see StatementInspectionInterceptor, async requests get the
+ *   statements of their database threads added) counts the statements
+ *   and how often each distinct select ran, the same select running nPlusOneThreshold times or more
+ *   in one scope is what lazy/eager loading of a collection per row (N+1) looks like
+ */
+public class StatementInspector {
+
+    private static final Log log = LogFactory.getLog(StatementInspector.class);
+
+    // a scope that runs more distinct selects than this stops tracking new ones
+    private static final int MAX_TRACKED_SELECTS = 1000;
+
+    private final ThreadLocal<Scope> scope = new ThreadLocal<>();
+
+    private final MetricRegistry metricRegistry;
+
+    private final long slowQueryNanos;
+
+    private final int nPlusOneThreshold;
+
+    /**
+     * @param metricRegistry
+     * @param slowQueryMillis - statements taking at least this long are logged, 0 logs every statement
+     * @param nPlusOneThreshold - executions of the same select in one scope that flag it
+     */
+    public StatementInspector(MetricRegistry metricRegistry, long slowQueryMillis, int nPlusOneThreshold) {
+        this.metricRegistry = metricRegistry;
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    /**
+     * Called by the statement proxies after each execute
+     * @param sql - the statement text as sent to the driver
+     * @param parameters - shape of the bind parameters, e.g. "(String, Integer)" or "batch of 50 x (String)"
+     * @param nanos - time spent in the execute call (for a streamed result, until the first rows)
+     */
+    void executed(String sql, String parameters, long nanos) {
+        String type = typeOf(sql);
+        metricRegistry.timer(MetricNames.tagged("jdbc.statements", "type", type)).update(nanos, TimeUnit.NANOSECONDS);
+
+        if (nanos >= slowQueryNanos) {
+            metricRegistry.counter("jdbc.statements.slow").inc();
+            if (log.isWarnEnabled()) {
+                log.warn("slow statement " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms: " + sql
+                        + (parameters.isEmpty() ? "" : " parameters " + parameters));
+            }
+        }
+
+        Scope current = scope.get();
+        if (current != null) {
+            current.executed(sql, "select".equals(type), nanos);
+        }
+    }
+
+    /**
+     * Starts counting the statements of the current thread, replaces a scope left open
+     */
+    public void begin() {
+        scope.set(new Scope());
+    }
+
+    /**
+     * Moves a scope between threads, e.g. to the thread running the database work of an async request
+     * and back to the request thread at the end
+     * @param scope - the scope the current thread continues, null leaves it without one
+     * @return Scope - the scope the thread had before, null when none
+     */
+    public Scope attach(Scope scope) {
+        Scope previous = scope();
+        if (scope == null) {
+            this.scope.remove();
+        } else {
+            this.scope.set(scope);
+        }
+        return previous;
+    }
+
+    /**
+     * @return Scope - the current thread's scope, null when none
+     */
+    public Scope scope() {
+        return scope.get();
+    }
+
+    /**
+     * Ends the current thread's scope
+     * @param description - what ran in the scope ("GET /employees"), for the log
+     * @return Summary - null when no scope was open
+     */
+    public Summary end(String description) {
+        Scope current = scope.get();
+        if (current == null) {
+            return null;
+        }
+        scope.remove();
+
+        Summary summary = current.summarize(nPlusOneThreshold);
+        if (summary.repeatedSelect != null && log.isWarnEnabled()) {
+            log.warn("possible N+1 in " + description + ": " + summary.repeatedSelectCount + " executions of "
+                    + summary.repeatedSelect + " (" + summary.statements + " statements in total)");
+        }
+        return summary;
+    }
+
+    private static String typeOf(String sql) {
+        String trimmed = sql.trim();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        String keyword = trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+        switch (keyword) {
+            case "select":
+            case "insert":
+            case "update":
+            case "delete":
+                return keyword;
+            default:
+                return "other";
+        }
+    }
+
+    /**
+     * Statements of one scope
+     */
+    public static final class Summary {
+
+        private final int statements;
+
+        private final long nanos;
+
+        private final String repeatedSelect;
+
+        private final int repeatedSelectCount;
+
+        Summary(int statements, long nanos, String repeatedSelect, int repeatedSelectCount) {
+            this.statements = statements;
+            this.nanos = nanos;
+            this.repeatedSelect = repeatedSelect;
+            this.repeatedSelectCount = repeatedSelectCount;
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+
+        /**
+         * @return long - total time spent executing the statements
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return boolean - true when one select ran at least nPlusOneThreshold times
+         */
+        public boolean isNPlusOne() {
+            return repeatedSelect != null;
+        }
+    }
+
+    /**
+     * Statements counted for one request
+     * written by the thread running the request, a database thread running a call of the request
+     * counts into a scope of its own and add()s it when done (see DatabaseCallExecutor): after a timeout
+     * that can happen while the request already renders or summarizes, so the methods lock
+     */
+    public static final class Scope {
+
+        private int statements;
+
+        private long nanos;
+
+        private final Map<String, int[]> selects = new HashMap<>();
+
+        synchronized void executed(String sql, boolean select, long statementNanos) {
+            statements++;
+            nanos += statementNanos;
+            if (select) {
+                countSelect(sql, 1);
+            }
+        }
+
+        /**
+         * @param other - a finished scope, no longer written
+         */
+        public synchronized void add(Scope other) {
+            statements += other.statements;
+            nanos += other.nanos;
+            for (Map.Entry<String, int[]> entry : other.selects.entrySet()) {
+                countSelect(entry.getKey(), entry.getValue()[0]);
+            }
+        }
+
+        private void countSelect(String sql, int executions) {
+            int[] count = selects.get(sql);
+            if (count == null) {
+                if (selects.size() >= MAX_TRACKED_SELECTS) {
+                    return;
+                }
+                count = new int[1];
+                selects.put(sql, count);
+            }
+            count[0] += executions;
+        }
+
+        synchronized Summary summarize(int nPlusOneThreshold) {
+            String repeated = null;
+            int repeatedCount = 0;
+            for (Map.Entry<String, int[]> entry : selects.entrySet()) {
+                if (entry.getValue()[0] > repeatedCount) {
+                    repeated = entry.getKey();
+                    repeatedCount = entry.getValue()[0];
+                }
+            }
+            if (repeatedCount < nPlusOneThreshold) {
+                repeated = null;
+            }
+            return new Summary(statements, nanos, repeated, repeatedCount);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.marcuschiu.data.migration;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the Flyway migration when the bean is created
+ * - synchronous: migrate() runs right here, beans that depend on this one see the migrated schema
+ * - async: migrate() runs on a background thread while the rest of the context (Hibernate metadata,
+ *   MVC, views) is built, none of that reads the application tables
+ *   start() is the barrier, it is the first lifecycle callback of the context and blocks until the
+ *   migration finished, so the context is not refreshed (and serves no request) on an old schema
+ *   a failed migration fails the startup in both modes
+ */
+public class FlywayMigrationRunner implements InitializingBean, SmartLifecycle, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(FlywayMigrationRunner.class);
+
+    private final Flyway flyway;
+
+    private final boolean async;
+
+    private ExecutorService executor;
+
+    private Future<Integer> migration;
+
+    private volatile boolean running;
+
+    /**
+     * @param flyway - configured, not yet migrated
+     * @param async - migrate on a background thread
+     */
+    public FlywayMigrationRunner(Flyway flyway, boolean async) {
+        this.flyway = flyway;
+        this.async = async;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Callable<Integer> task = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                long start = System.nanoTime();
+                int applied = flyway.migrate();
+                log.info("schema migration applied " + applied + " migration(s) in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms"
+                        + (async ? " on a background thread" : ""));
+                return applied;
+            }
+        };
+
+        if (async) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "flyway-migration");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            migration = executor.submit(task);
+            executor.shutdown();
+        } else {
+            FutureTask<Integer> migrate = new FutureTask<>(task);
+            migrate.run();
+            migration = migrate;
+            awaitMigration();
+        }
+    }
+
+    /**
+     * Blocks until the migration finished
+     * @return int - number of migrations applied
+     */
+    public int awaitMigration() {
+        long start = System.nanoTime();
+        try {
+            int applied = migration.get();
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (async && waited > 0) {
+                log.info("startup waited " + waited + " ms for the schema migration");
+            }
+            return applied;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("schema migration failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for the schema migration", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        awaitMigration();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    /**
+     * Started first, stopped last
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
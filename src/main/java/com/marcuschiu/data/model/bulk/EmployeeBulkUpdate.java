@@ -0,0 +1,49 @@
+package com.marcuschiu.data.model.bulk;
+
+import org.joda.time.LocalDate;
+
+import java.math.BigDecimal;
+
+/**
+ * The same change applied to many employees in set-based statements (EmployeeDao.updateByIds)
+ * fields left null are not changed, ssn and name are per employee and cannot be set in bulk
+ */
+public class EmployeeBulkUpdate {
+
+    private BigDecimal salary;
+
+    private BigDecimal salaryFactor;
+
+    private String text;
+
+    private LocalDate joiningDate;
+
+    public BigDecimal getSalary() { return salary; }
+
+    /**
+     * @param salary - the new salary of every employee, excludes salaryFactor
+     */
+    public void setSalary(BigDecimal salary) { this.salary = salary; }
+
+    public BigDecimal getSalaryFactor() { return salaryFactor; }
+
+    /**
+     * @param salaryFactor - every salary is multiplied by this (1.03 is a 3% raise), excludes salary
+     */
+    public void setSalaryFactor(BigDecimal salaryFactor) { this.salaryFactor = salaryFactor; }
+
+    public String getText() { return text; }
+
+    public void setText(String text) { this.text = text; }
+
+    public LocalDate getJoiningDate() { return joiningDate; }
+
+    public void setJoiningDate(LocalDate joiningDate) { this.joiningDate = joiningDate; }
+
+    /**
+     * @return boolean - true when nothing would change
+     */
+    public boolean isEmpty() {
+        return salary == null && salaryFactor == null && text == null && joiningDate == null;
+    }
+}
@@ -1,9 +1,16 @@
 package com.marcuschiu.data.model.entity;
 
 import com.marcuschiu.data.model.embeddable.Name;
+import com.marcuschiu.data.model.projection.EmployeeSummary;
+import com.marcuschiu.data.model.projection.EmployeeVersion;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
 import org.hibernate.annotations.Type;
 import org.hibernate.validator.constraints.NotBlank;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.springframework.format.annotation.DateTimeFormat;
 
@@ -17,11 +24,85 @@ import java.util.List;
  * @Entity - represents a table in a database
  * @Table - name - name of database table to map to
  *               - if not specified, defaulted to class name
+ * @Cacheable/@Cache - entity is kept in the second-level cache region "employee"
+ *                   - regions (size, eviction, TTL) are configured in cache/ehcache.xml
+ * @NamedQueries - every query EmployeeDaoImpl runs, parsed and translated to SQL once when the
+ *                 SessionFactory starts (a broken query fails the startup, not a request)
+ * version/lastModified change with every update Hibernate flushes, updates that bypass the session
+ * (HQL/JDBC bulk updates) must bump them as well, DefaultController's conditional GETs rely on them
  */
 @Entity
 @Table(name="EMPLOYEE")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "employee")
+@NamedQueries({
+        @NamedQuery(name = Employee.QUERY_FIND_ALL, query = "from Employee e"),
+        @NamedQuery(name = Employee.QUERY_FIND_BY_SSN, query = "from Employee e where e.ssn = :ssn", hints = {
+                @QueryHint(name = QueryHints.CACHEABLE, value = "true"),
+                @QueryHint(name = QueryHints.CACHE_REGION, value = Employee.QUERY_CACHE_SSN)
+        }),
+        @NamedQuery(name = Employee.QUERY_FIND_SSNS_IN, query = "select e.ssn from Employee e where e.ssn in (:ssns)"),
+        @NamedQuery(name = Employee.QUERY_FIND_PAGE_AFTER_ID,
+                query = "from Employee e where e.id > :afterId order by e.id asc"),
+        @NamedQuery(name = Employee.QUERY_FIND_PAGE_BEFORE_ID,
+                query = "from Employee e where e.id < :beforeId order by e.id desc"),
+        @NamedQuery(name = Employee.QUERY_SCROLL_ALL, query = "select e.id, e.name, e.ssn, e.joiningDate, " +
+                "e.birthDate, e.salary, e.text, e.nameTwo.first, e.nameTwo.middle, e.nameTwo.last " +
+                "from Employee e order by e.id", hints = {
+                @QueryHint(name = QueryHints.READ_ONLY, value = "true")
+        }),
+        @NamedQuery(name = Employee.QUERY_FIND_IDS_BY_SSNS, query = "select e.id, e.ssn from Employee e where e.ssn in (:ssns)"),
+        @NamedQuery(name = Employee.QUERY_FIND_SSNS_BY_IDS, query = "select e.id, e.ssn from Employee e where e.id in (:ids)"),
+        // projections, only the columns of an EmployeeSummary are selected and no entity is built
+        @NamedQuery(name = Employee.QUERY_SUMMARY_BY_ID, query = EmployeeSummary.SELECT + " where e.id = :id"),
+        @NamedQuery(name = Employee.QUERY_SUMMARY_BY_SSN, query = EmployeeSummary.SELECT + " where e.ssn = :ssn"),
+        @NamedQuery(name = Employee.QUERY_SUMMARY_PAGE_AFTER_ID,
+                query = EmployeeSummary.SELECT + " where e.id > :afterId order by e.id asc"),
+        @NamedQuery(name = Employee.QUERY_SUMMARY_PAGE_BEFORE_ID,
+                query = EmployeeSummary.SELECT + " where e.id < :beforeId order by e.id desc"),
+        // version probes of the conditional GETs
+        @NamedQuery(name = Employee.QUERY_VERSION_BY_SSN, query = EmployeeVersion.SELECT + " where e.ssn = :ssn"),
+        @NamedQuery(name = Employee.QUERY_VERSIONS_PAGE_AFTER_ID,
+                query = EmployeeVersion.SELECT + " where e.id > :afterId order by e.id asc"),
+        @NamedQuery(name = Employee.QUERY_VERSIONS_PAGE_BEFORE_ID,
+                query = EmployeeVersion.SELECT + " where e.id < :beforeId order by e.id desc")
+})
+// InnoDB's approximate row count from its table statistics; TABLE_NAME must be compared as is (no function
+// around it), only then MySQL looks up this one table instead of opening every table of the schema
+@NamedNativeQuery(name = Employee.QUERY_ESTIMATE_COUNT, resultSetMapping = "Employee.tableRows",
+        query = "select TABLE_ROWS from information_schema.TABLES " +
+                "where TABLE_SCHEMA = database() and TABLE_NAME = 'EMPLOYEE'")
+@SqlResultSetMapping(name = "Employee.tableRows", columns = @ColumnResult(name = "TABLE_ROWS"))
 public class Employee {
 
+    /**
+     * Query cache region for lookups by ssn, configured in cache/ehcache.xml
+     */
+    public static final String QUERY_CACHE_SSN = "query.employee.ssn";
+
+    /*
+     * Named query names, see @NamedQueries above
+     * Spring Data looks up a named query "Employee.<method>" for every EmployeeRepository query method,
+     * these are named after the EmployeeDao methods and must not collide with those
+     */
+    public static final String QUERY_FIND_ALL = "Employee.findAll";
+    // not "Employee.findBySsn": that is the name Spring Data resolves EmployeeRepository.findBySsn to
+    public static final String QUERY_FIND_BY_SSN = "Employee.findOneBySsn";
+    public static final String QUERY_FIND_SSNS_IN = "Employee.findSsnsIn";
+    public static final String QUERY_FIND_PAGE_AFTER_ID = "Employee.findPageAfterId";
+    public static final String QUERY_FIND_PAGE_BEFORE_ID = "Employee.findPageBeforeId";
+    public static final String QUERY_ESTIMATE_COUNT = "Employee.estimateCount";
+    public static final String QUERY_SCROLL_ALL = "Employee.scrollAll";
+    public static final String QUERY_FIND_IDS_BY_SSNS = "Employee.findIdsBySsns";
+    public static final String QUERY_FIND_SSNS_BY_IDS = "Employee.findSsnsByIds";
+    public static final String QUERY_SUMMARY_BY_ID = "Employee.findSummaryById";
+    public static final String QUERY_SUMMARY_BY_SSN = "Employee.findSummaryBySsn";
+    public static final String QUERY_SUMMARY_PAGE_AFTER_ID = "Employee.findSummaryPageAfterId";
+    public static final String QUERY_SUMMARY_PAGE_BEFORE_ID = "Employee.findSummaryPageBeforeId";
+    public static final String QUERY_VERSION_BY_SSN = "Employee.findVersionBySsn";
+    public static final String QUERY_VERSIONS_PAGE_AFTER_ID = "Employee.findVersionsPageAfterId";
+    public static final String QUERY_VERSIONS_PAGE_BEFORE_ID = "Employee.findVersionsPageBeforeId";
+
     /*
      * All instance variables are assumed to be @Basic
      * @Basic - is implicitly implied for each variable
@@ -50,9 +131,15 @@ public class Employee {
      * cascade -
      * mappedBy - attribute indicates this entity "Employee" is the inverse of the relationship
      *          - and owner resides in the other entity "Phone"
+     * @BatchSize - when one uninitialized phones collection is touched, Hibernate loads the
+     *              phones of up to 'size' employees in the session with a single IN query
+     *              (sized to a full page of EmployeeService.MAX_PAGE_SIZE)
+     * @Cache - the collection (phone ids) is kept in the second-level cache, phones themselves in "phone"
      */
     //@Access(AccessType.FIELD)
-    @OneToMany(fetch = FetchType.EAGER, cascade=CascadeType.ALL, mappedBy = "employee")
+    @OneToMany(fetch = FetchType.LAZY, cascade=CascadeType.ALL, mappedBy = "employee")
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "employee.phones")
     private List<Phone> phones;
 
     /**
@@ -127,6 +214,21 @@ public class Employee {
     @Column(name = "SSN", unique=true, nullable = false)
     private String ssn;
 
+    /**
+     * @Version - incremented by Hibernate with every update of the row, an update based on an
+     *            older version fails with a StaleObjectStateException
+     */
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private int version;
+
+    /**
+     * time of the last insert/update through Hibernate, set by touch()
+     */
+    @Column(name = "LAST_MODIFIED", nullable = false)
+    @Type(type = "org.jadira.usertype.dateandtime.joda.PersistentDateTime")
+    private DateTime lastModified;
+
     /**
      * @Transient - specifies property will not be persisted to database
      */
@@ -188,6 +290,23 @@ public class Employee {
         this.ssn = ssn;
     }
 
+    public int getVersion() { return version; }
+
+    public void setVersion(int version) { this.version = version; }
+
+    public DateTime getLastModified() { return lastModified; }
+
+    public void setLastModified(DateTime lastModified) { this.lastModified = lastModified; }
+
+    /**
+     * @PrePersist/@PreUpdate - JPA callbacks, run before the insert and before every dirty flush
+     */
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new DateTime();
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
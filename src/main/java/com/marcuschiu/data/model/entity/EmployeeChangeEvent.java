@@ -0,0 +1,110 @@
+package com.marcuschiu.data.model.entity;
+
+import org.hibernate.annotations.Immutable;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+
+/**
+ * A row of the outbox EMPLOYEE_OUTBOX, one change of one employee as committed
+ * - CREATED/UPDATED carry the employee's columns after the change, DELETED only its id and ssn
+ * - ids grow with the order the events were appended in, consumers can drop an id they have already seen
+ * @Immutable - appended by EmployeeOutboxDaoImpl's statements, never changed
+ */
+@Entity
+@Table(name = "EMPLOYEE_OUTBOX")
+@Immutable
+@NamedQueries({
+        @NamedQuery(name = EmployeeChangeEvent.QUERY_FIND_AFTER_ID,
+                query = "from EmployeeChangeEvent e where e.id > :afterId order by e.id asc"),
+        @NamedQuery(name = EmployeeChangeEvent.QUERY_FIND_LAST_ID, query = "select max(e.id) from EmployeeChangeEvent e")
+})
+public class EmployeeChangeEvent {
+
+    public static final String QUERY_FIND_AFTER_ID = "EmployeeChangeEvent.findAfterId";
+    public static final String QUERY_FIND_LAST_ID = "EmployeeChangeEvent.findLastId";
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false)
+    private Type type;
+
+    @Column(name = "employee_id", nullable = false)
+    private int employeeId;
+
+    @Column(name = "ssn", nullable = false)
+    private String ssn;
+
+    @Column(name = "version")
+    private Integer version;
+
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "first")
+    private String first;
+
+    @Column(name = "middle")
+    private String middle;
+
+    @Column(name = "last")
+    private String last;
+
+    @Column(name = "joining_date")
+    @org.hibernate.annotations.Type(type = "org.jadira.usertype.dateandtime.joda.PersistentLocalDate")
+    private LocalDate joiningDate;
+
+    @Column(name = "birth_date")
+    @org.hibernate.annotations.Type(type = "org.jadira.usertype.dateandtime.joda.PersistentLocalDate")
+    private LocalDate birthDate;
+
+    @Column(name = "salary")
+    private BigDecimal salary;
+
+    @Column(name = "text")
+    private String text;
+
+    @Column(name = "created_at", nullable = false)
+    @org.hibernate.annotations.Type(type = "org.jadira.usertype.dateandtime.joda.PersistentDateTime")
+    private DateTime createdAt;
+
+    public long getId() { return id; }
+
+    public Type getType() { return type; }
+
+    public int getEmployeeId() { return employeeId; }
+
+    public String getSsn() { return ssn; }
+
+    public Integer getVersion() { return version; }
+
+    public String getName() { return name; }
+
+    public String getFirst() { return first; }
+
+    public String getMiddle() { return middle; }
+
+    public String getLast() { return last; }
+
+    public LocalDate getJoiningDate() { return joiningDate; }
+
+    public LocalDate getBirthDate() { return birthDate; }
+
+    public BigDecimal getSalary() { return salary; }
+
+    public String getText() { return text; }
+
+    public DateTime getCreatedAt() { return createdAt; }
+
+    @Override
+    public String toString() {
+        return "EmployeeChangeEvent [id=" + id + ", type=" + type + ", employeeId=" + employeeId + ", ssn=" + ssn + "]";
+    }
+}
@@ -1,5 +1,7 @@
 package com.marcuschiu.data.model.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.validator.constraints.NotBlank;
 
 import javax.persistence.*;
@@ -7,11 +9,23 @@ import javax.validation.constraints.Size;
 
 /**
  * Created by marcus.chiu on 10/26/16.
+ * @NamedQueries - the queries PhoneDaoImpl runs, checked when the SessionFactory starts
  */
 @Entity
 @Table(name = "PHONE")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "phone")
+@NamedQueries({
+        @NamedQuery(name = Phone.QUERY_FIND_ALL, query = "from Phone p"),
+        @NamedQuery(name = Phone.QUERY_FIND_BY_NUMBER, query = "from Phone p where p.number = :number"),
+        @NamedQuery(name = Phone.QUERY_DELETE_BY_ID, query = "delete from Phone p where p.id = :id")
+})
 public class Phone {
 
+    public static final String QUERY_FIND_ALL = "Phone.findAll";
+    public static final String QUERY_FIND_BY_NUMBER = "Phone.findByNumber";
+    public static final String QUERY_DELETE_BY_ID = "Phone.deleteById";
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     @Column(name = "phone_id", nullable = false)
@@ -34,8 +48,10 @@ public class Phone {
      *            and owner resides in the other entity
      * name - name of database column
      * foreignKey -
+     * fetch - LAZY, the owning employee is almost always already in the session
+     *         when its phones are loaded, so an eager join would only re-read it
      */
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "employee_id", foreignKey = @ForeignKey(name = "EMPLOYEE_ID_FK"))
     private Employee employee;
 
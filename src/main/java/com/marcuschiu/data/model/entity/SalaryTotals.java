@@ -0,0 +1,51 @@
+package com.marcuschiu.data.model.entity;
+
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Headcount and payroll of the employees who joined in one year, a row of the summary table
+ * SALARY_BY_JOINING_YEAR
+ * @Immutable - the rows are only changed by SalaryTotalsDaoImpl's statements, never flushed by Hibernate
+ * not @Cacheable, the statements bypass the second-level cache
+ */
+@Entity
+@Table(name = "SALARY_BY_JOINING_YEAR")
+@Immutable
+@NamedQueries({
+        // years whose employees are all gone keep a row with headcount 0
+        @NamedQuery(name = SalaryTotals.QUERY_FIND_ALL,
+                query = "from SalaryTotals t where t.headcount > 0 order by t.joiningYear asc")
+})
+public class SalaryTotals {
+
+    public static final String QUERY_FIND_ALL = "SalaryTotals.findAll";
+
+    @Id
+    @Column(name = "joining_year", nullable = false)
+    private int joiningYear;
+
+    @Column(name = "headcount", nullable = false)
+    private int headcount;
+
+    @Column(name = "total_salary", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalSalary;
+
+    public int getJoiningYear() { return joiningYear; }
+
+    public int getHeadcount() { return headcount; }
+
+    public BigDecimal getTotalSalary() { return totalSalary; }
+
+    public BigDecimal getAverageSalary() {
+        return headcount == 0 ? null : totalSalary.divide(BigDecimal.valueOf(headcount), 2, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public String toString() {
+        return "SalaryTotals [joiningYear=" + joiningYear + ", headcount=" + headcount + ", totalSalary=" + totalSalary + "]";
+    }
+}
@@ -0,0 +1,59 @@
+package com.marcuschiu.data.model.page;
+
+import java.util.List;
+
+/**
+ * One page of a keyset (cursor) paginated listing
+ * Instead of OFFSET/LIMIT, each page remembers the ids at its edges so the
+ * next query can seek straight to 'id > nextCursor' (or 'id < previousCursor')
+ * on the primary key index, no matter how deep into the table we are
+ * @param <T> - type of the rows on the page
+ */
+public class KeysetPage<T> {
+
+    private final List<T> content;
+
+    private final int size;
+
+    private final Integer nextCursor;
+
+    private final Integer previousCursor;
+
+    private final Long estimatedTotal;
+
+    public KeysetPage(List<T> content, int size, Integer nextCursor, Integer previousCursor, Long estimatedTotal) {
+        this.content = content;
+        this.size = size;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+        this.estimatedTotal = estimatedTotal;
+    }
+
+    public List<T> getContent() { return content; }
+
+    /**
+     * @return the requested (bounded) page size, not the number of rows on this page
+     */
+    public int getSize() { return size; }
+
+    /**
+     * @return id to pass as 'after' to fetch the next page, null on the last page
+     */
+    public Integer getNextCursor() { return nextCursor; }
+
+    /**
+     * @return id to pass as 'before' to fetch the previous page, null on the first page
+     */
+    public Integer getPreviousCursor() { return previousCursor; }
+
+    public boolean isHasNext() { return nextCursor != null; }
+
+    public boolean isHasPrevious() { return previousCursor != null; }
+
+    /**
+     * @return approximate number of rows in the whole listing, taken from table
+     * statistics rather than a COUNT(*) scan, null when it was not asked for (version probes)
+     * or the database keeps no such statistics
+     */
+    public Long getEstimatedTotal() { return estimatedTotal; }
+}
@@ -0,0 +1,72 @@
+package com.marcuschiu.data.model.projection;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import org.joda.time.LocalDate;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only view of an employee, built by Hibernate straight from the selected columns
+ * (constructor expression, see SELECT) instead of hydrating an Employee:
+ * no persistence context entry, no dirty-check snapshot, no phones
+ * this is what the JSON API (/api/employees) returns
+ */
+@JsonPropertyOrder({"id", "name", "ssn", "joiningDate", "birthDate", "salary", "text"})
+public class EmployeeSummary {
+
+    /**
+     * select list of the named queries that build summaries (Employee.QUERY_SUMMARY_*),
+     * it must match the constructor
+     */
+    public static final String SELECT = "select new com.marcuschiu.data.model.projection.EmployeeSummary(" +
+            "e.id, e.name, e.ssn, e.joiningDate, e.birthDate, e.salary, e.text) from Employee e";
+
+    private final int id;
+
+    private final String name;
+
+    private final String ssn;
+
+    private final LocalDate joiningDate;
+
+    private final LocalDate birthDate;
+
+    private final BigDecimal salary;
+
+    private final String text;
+
+    public EmployeeSummary(int id, String name, String ssn, LocalDate joiningDate, LocalDate birthDate,
+                           BigDecimal salary, String text) {
+        this.id = id;
+        this.name = name;
+        this.ssn = ssn;
+        this.joiningDate = joiningDate;
+        this.birthDate = birthDate;
+        this.salary = salary;
+        this.text = text;
+    }
+
+    public int getId() { return id; }
+
+    public String getName() { return name; }
+
+    public String getSsn() { return ssn; }
+
+    /**
+     * @return LocalDate - written as yyyy-MM-dd
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
+    public LocalDate getJoiningDate() { return joiningDate; }
+
+    /**
+     * @return LocalDate - written as yyyy-MM-dd
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
+    public LocalDate getBirthDate() { return birthDate; }
+
+    public BigDecimal getSalary() { return salary; }
+
+    public String getText() { return text; }
+}
@@ -0,0 +1,35 @@
+package com.marcuschiu.data.model.projection;
+
+import org.joda.time.DateTime;
+
+/**
+ * Version of an employee row, what a conditional GET compares against before anything is loaded
+ * built by Hibernate from a constructor expression (see SELECT), read from the row only
+ */
+public class EmployeeVersion {
+
+    /**
+     * select list of the named queries that build versions (Employee.QUERY_VERSION*),
+     * it must match the constructor
+     */
+    public static final String SELECT = "select new com.marcuschiu.data.model.projection.EmployeeVersion(" +
+            "e.id, e.version, e.lastModified) from Employee e";
+
+    private final int id;
+
+    private final int version;
+
+    private final DateTime lastModified;
+
+    public EmployeeVersion(int id, int version, DateTime lastModified) {
+        this.id = id;
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    public int getId() { return id; }
+
+    public int getVersion() { return version; }
+
+    public DateTime getLastModified() { return lastModified; }
+}
@@ -0,0 +1,84 @@
+package com.marcuschiu.data.model.summary;
+
+import org.joda.time.LocalDate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Headcount and payroll deltas by joining year, what a write does to the SalaryTotals (SalaryTotalsDao.apply)
+ * salaries are counted rounded to cents, like the rebuild does
+ * not thread safe
+ */
+public class SalaryTotalsChange {
+
+    // ascending years, SalaryTotalsDao.apply updates the rows in this order
+    private final TreeMap<Integer, Delta> deltas = new TreeMap<>();
+
+    /**
+     * Counts an employee in
+     * @param joiningDate
+     * @param salary
+     * @return this
+     */
+    public SalaryTotalsChange add(LocalDate joiningDate, BigDecimal salary) {
+        return add(joiningDate.getYear(), 1, salary.setScale(2, RoundingMode.HALF_UP));
+    }
+
+    public SalaryTotalsChange subtractAll(SalaryTotalsChange change) {
+        for (Map.Entry<Integer, Delta> delta : change.deltas.entrySet()) {
+            add(delta.getKey(), -delta.getValue().headcount, delta.getValue().totalSalary.negate());
+        }
+        return this;
+    }
+
+    private SalaryTotalsChange add(int year, int headcount, BigDecimal totalSalary) {
+        Delta delta = deltas.get(year);
+        if (delta == null) {
+            delta = new Delta();
+            deltas.put(year, delta);
+        }
+        delta.headcount += headcount;
+        delta.totalSalary = delta.totalSalary.add(totalSalary);
+        return this;
+    }
+
+    /**
+     * @return the years whose totals change, ascending (an update that moves nothing between years
+     * and keeps the salaries changes none)
+     */
+    public List<Integer> years() {
+        List<Integer> years = new ArrayList<>(deltas.size());
+        for (Map.Entry<Integer, Delta> delta : deltas.entrySet()) {
+            if (delta.getValue().headcount != 0 || delta.getValue().totalSalary.signum() != 0) {
+                years.add(delta.getKey());
+            }
+        }
+        return years;
+    }
+
+    public boolean isEmpty() {
+        return years().isEmpty();
+    }
+
+    public int headcount(int year) {
+        Delta delta = deltas.get(year);
+        return delta == null ? 0 : delta.headcount;
+    }
+
+    public BigDecimal totalSalary(int year) {
+        Delta delta = deltas.get(year);
+        return delta == null ? BigDecimal.ZERO : delta.totalSalary;
+    }
+
+    private static final class Delta {
+
+        int headcount;
+
+        BigDecimal totalSalary = BigDecimal.ZERO;
+    }
+}
@@ -5,11 +5,13 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 /**
- * TODO save delete update does not work
+ * Spring Data repository on PersistenceConfig's persistence unit, the CRUD methods and deleteBySsnQuery
+ * run in a transaction of their own unless the caller already has one
  */
 @Repository
 public interface EmployeeRepository extends CrudRepository<Employee, Integer> {
@@ -17,9 +19,12 @@ public interface EmployeeRepository extends CrudRepository<Employee, Integer> {
 
     /**
      * @Modiying - Modifying queries can only use void or int/Integer as return type
+     * @Transactional - query methods are not transactional by default (only the CRUD methods are),
+     *                  a modifying query fails without a transaction
      * @param ssn
      * @return
      */
+    @Transactional
     @Modifying
     @Query("delete from Employee e where e.ssn = ?1")
     Integer deleteBySsnQuery(String ssn);
@@ -1,14 +1,29 @@
 package com.marcuschiu.data.repository.v1.dao;
 
+import com.google.common.collect.Lists;
+import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
+import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 /**
  * Generic class is the base class for all DAO implementation classes
@@ -23,18 +38,58 @@ public abstract class AbstractDao<PK extends Serializable, T> {
     }
 
     /**
-     * SessionFactory created during Application start from Persistence
-     * will be used here
+     * SessionFactory behind PersistenceConfig's EntityManagerFactory
+     * only used for stateless sessions, everything else goes through getSession()
      */
     @Autowired
     private SessionFactory sessionFactory;
 
+    /**
+     * Shared EntityManager, stands for the current transaction's EntityManager
+     */
     @PersistenceContext
     protected EntityManager entityManager;
 
+    // longest IN list of the set-based JDBC statements, see chunks()
+    @Value("${bulk.chunkSize:500}")
+    private int bulkChunkSize;
+
+    /**
+     * The Hibernate Session of the current transaction's EntityManager, so DAO work and
+     * Spring Data repository calls in one transaction share one persistence context
+     * @return Session
+     */
     protected Session getSession() {
-        //returns a Session object from the sessionFactory object bean
-        return sessionFactory.getCurrentSession();
+        Session session = entityManager.unwrap(Session.class);
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !session.isDefaultReadOnly()) {
+            // entities loaded in a read-only transaction are not snapshotted for dirty checking
+            // (the transaction manager already switched the session to FlushMode.MANUAL)
+            session.setDefaultReadOnly(true);
+            // its rows may come from the lagging replica (ReplicaRoutingDataSource), the second-level
+            // and query caches are read but not filled from them
+            session.setCacheMode(CacheMode.GET);
+        }
+        return session;
+    }
+
+    /**
+     * A stateless session has no persistence context (no first-level cache, no dirty
+     * checking, no cascades), so reading millions of rows through it keeps memory flat
+     * it runs on its own connection outside of the current transaction, the caller must close it
+     * @return StatelessSession
+     */
+    protected StatelessSession openStatelessSession() {
+        return sessionFactory.openStatelessSession();
+    }
+
+    /**
+     * Named queries (@NamedQuery on the entities) are parsed and translated to SQL once,
+     * when the SessionFactory starts, so a call only binds parameters
+     * @param queryName - name of a @NamedQuery/@NamedNativeQuery
+     * @return Query
+     */
+    protected Query getNamedQuery(String queryName) {
+        return getSession().getNamedQuery(queryName);
     }
 
     @SuppressWarnings("unchecked")
@@ -42,6 +97,75 @@ public abstract class AbstractDao<PK extends Serializable, T> {
         return (T) getSession().get(persistentClass, key);
     }
 
+    /**
+     * Initializes lazy proxies/collections while the session is still open
+     * uninitialized collections mapped with @BatchSize are loaded together,
+     * so initializing a whole page costs one query per batch instead of one per entity
+     * @param proxies - lazy proxies or collections, nulls are ignored
+     */
+    protected void initialize(Iterable<?> proxies) {
+        for (Object proxy : proxies) {
+            if (proxy != null) {
+                Hibernate.initialize(proxy);
+            }
+        }
+    }
+
+    /**
+     * Detaches the entities with these keys from the current session, if it has them, without loading
+     * anything, for statements that change rows behind the session's back (JDBC, bulk updates):
+     * a managed copy would otherwise be stale, or be flushed over the new row
+     * cascades like Session.evict, e.g. to the phones of an employee
+     * @param keys
+     */
+    protected void evictFromSession(Collection<PK> keys) {
+        Session session = getSession();
+        SessionImplementor implementor = (SessionImplementor) session;
+        EntityPersister persister = implementor.getFactory().getEntityPersister(persistentClass.getName());
+        for (PK key : keys) {
+            Object entity = implementor.getPersistenceContext().getEntity(implementor.generateEntityKey(key, persister));
+            if (entity != null) {
+                session.evict(entity);
+            }
+        }
+    }
+
+    /**
+     * Splits the distinct values into IN lists of at most bulk.chunkSize
+     * each list is padded to the next power of two by repeating its last value (IN ignores duplicates),
+     * so the statements come in a handful of shapes the driver and the database can reuse
+     * @param values
+     * @param <V>
+     * @return List
+     */
+    protected <V> List<List<V>> chunks(Collection<V> values) {
+        List<List<V>> chunks = new ArrayList<>();
+        for (List<V> chunk : Lists.partition(new ArrayList<>(new LinkedHashSet<>(values)), bulkChunkSize)) {
+            int padded = Math.min(Integer.highestOneBit(chunk.size() * 2 - 1), bulkChunkSize);
+            List<V> list = new ArrayList<>(padded);
+            list.addAll(chunk);
+            while (list.size() < padded) {
+                list.add(chunk.get(chunk.size() - 1));
+            }
+            chunks.add(list);
+        }
+        return chunks;
+    }
+
+    protected static String placeholders(int count) {
+        StringBuilder in = new StringBuilder(count * 3 + 1).append('(');
+        for (int i = 0; i < count; i++) {
+            in.append(i == 0 ? "?" : ", ?");
+        }
+        return in.append(')').toString();
+    }
+
+    protected static void setIds(PreparedStatement statement, int index, List<Integer> ids) throws SQLException {
+        for (Integer id : ids) {
+            statement.setInt(index++, id);
+        }
+    }
+
     public void persist(T entity) {
         getSession().persist(entity);
     }
@@ -1,9 +1,16 @@
 package com.marcuschiu.data.repository.v1.dao;
 
 
+import com.marcuschiu.data.model.bulk.EmployeeBulkUpdate;
 import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.data.model.projection.EmployeeSummary;
+import com.marcuschiu.data.model.projection.EmployeeVersion;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by marcus.chiu on 10/17/16.
@@ -14,10 +21,152 @@ public interface EmployeeDao {
 
     void save(Employee employee);
 
-    void deleteEmployeeBySsn(String ssn);
+    /**
+     * Inserts all employees with JDBC batching, bypassing the session
+     * (no generated ids are set on the given objects)
+     * @param employees
+     */
+    void batchInsert(List<Employee> employees);
+
+    /**
+     * Writes the editable columns (name, ssn, dates, salary, text) of an employee in one UPDATE by id,
+     * without loading it, only if the row still has employee.getVersion()
+     * the row's version is incremented and lastModified set, the given object is not changed
+     * @param employee - detached, e.g. bound from the edit form
+     * @return boolean - false when the row was changed or deleted since that version (lost update)
+     */
+    boolean updateIfVersion(Employee employee);
+
+    /**
+     * @param ssns
+     * @return id to ssn of the employees with one of these ssns, unknown ssns are left out
+     */
+    Map<Integer, String> findIdsBySsns(Collection<String> ssns);
+
+    /**
+     * @param ids
+     * @return id to ssn of the employees with one of these ids, unknown ids are left out
+     */
+    Map<Integer, String> findSsnsByIds(Collection<Integer> ids);
+
+    /**
+     * Deletes the employees and their phones with set-based statements, bulk.chunkSize ids per statement,
+     * in the current transaction
+     * the employees are evicted from the session and the second-level cache, other caches are the caller's
+     * @param ids
+     * @return number of employees deleted
+     */
+    int deleteByIds(Collection<Integer> ids);
+
+    /**
+     * Applies the same change to the employees with set-based statements, bulk.chunkSize ids per statement,
+     * in the current transaction, their versions are incremented and lastModified set
+     * the employees are evicted from the session and the second-level cache, other caches are the caller's
+     * @param ids
+     * @param update - not empty
+     * @return number of employees updated
+     */
+    int updateByIds(Collection<Integer> ids, EmployeeBulkUpdate update);
 
     List<Employee> findAll();
 
     Employee findOneBySsn(String ssn);
 
+    /**
+     * @param ssns
+     * @return those of the given ssns that already belong to an employee
+     */
+    Set<String> findExistingSsns(Collection<String> ssns);
+
+    /**
+     * Loads the lazy phones collections of the given (managed) employees,
+     * batched so a whole page takes a single extra query
+     * @param employees
+     */
+    void initializePhones(List<Employee> employees);
+
+    /**
+     * Streams every employee ordered by id through a forward-only cursor,
+     * without a persistence context: memory use does not grow with the table size
+     * employees handed to the callback are transient and have no phones
+     * @param callback
+     * @throws IOException - thrown by the callback
+     */
+    void scrollAll(ScrollCallback<Employee> callback) throws IOException;
+
+    /**
+     * Keyset pagination forward
+     * @param afterId - only employees with an id greater than this are returned
+     * @param limit - maximum number of employees returned
+     * @return employees ordered by ascending id
+     */
+    List<Employee> findPageAfterId(int afterId, int limit);
+
+    /**
+     * Keyset pagination backward
+     * @param beforeId - only employees with an id less than this are returned
+     * @param limit - maximum number of employees returned
+     * @return employees ordered by DESCENDING id (closest to beforeId first)
+     */
+    List<Employee> findPageBeforeId(int beforeId, int limit);
+
+    /**
+     * @return approximate row count of the EMPLOYEE table, read from table statistics
+     * so it does not scan the whole table, null when the database keeps none (not MySQL)
+     */
+    Long estimateCount();
+
+    /**
+     * Projection query, the employee is not loaded into the session
+     * @param id
+     * @return summary of the employee with this id, or null if there is none
+     */
+    EmployeeSummary findSummaryById(int id);
+
+    /**
+     * Projection query, the employee is not loaded into the session
+     * @param ssn
+     * @return summary of the employee with this ssn, or null if there is none
+     */
+    EmployeeSummary findSummaryBySsn(String ssn);
+
+    /**
+     * Keyset pagination forward over projections
+     * @param afterId - only employees with an id greater than this are returned
+     * @param limit - maximum number of summaries returned
+     * @return summaries ordered by ascending id
+     */
+    List<EmployeeSummary> findSummaryPageAfterId(int afterId, int limit);
+
+    /**
+     * Keyset pagination backward over projections
+     * @param beforeId - only employees with an id less than this are returned
+     * @param limit - maximum number of summaries returned
+     * @return summaries ordered by DESCENDING id (closest to beforeId first)
+     */
+    List<EmployeeSummary> findSummaryPageBeforeId(int beforeId, int limit);
+
+    /**
+     * Version probe, reads the version columns of one row
+     * @param ssn
+     * @return version of the employee with this ssn, or null if there is none
+     */
+    EmployeeVersion findVersionBySsn(String ssn);
+
+    /**
+     * Version probe of findPageAfterId, same rows in the same order
+     * @param afterId
+     * @param limit
+     * @return versions ordered by ascending id
+     */
+    List<EmployeeVersion> findVersionsPageAfterId(int afterId, int limit);
+
+    /**
+     * Version probe of findPageBeforeId, same rows in the same order
+     * @param beforeId
+     * @param limit
+     * @return versions ordered by DESCENDING id
+     */
+    List<EmployeeVersion> findVersionsPageBeforeId(int beforeId, int limit);
+
 }
@@ -0,0 +1,62 @@
+package com.marcuschiu.data.repository.v1.dao;
+
+import com.marcuschiu.data.model.entity.EmployeeChangeEvent;
+import org.joda.time.DateTime;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outbox EMPLOYEE_OUTBOX and the relay's OUTBOX_CHECKPOINT
+ */
+public interface EmployeeOutboxDao {
+
+    /**
+     * Appends an event per employee carrying its current row, in the current transaction,
+     * bulk.chunkSize ids per statement
+     * like appendDeleted, other appending transactions wait until the current one ends (ids commit in order)
+     * @param type - CREATED or UPDATED
+     * @param ids - unknown ids are left out
+     */
+    void appendChanged(EmployeeChangeEvent.Type type, Collection<Integer> ids);
+
+    /**
+     * Appends a DELETED event per employee, in the current transaction
+     * @param ssnsById - id to ssn
+     */
+    void appendDeleted(Map<Integer, String> ssnsById);
+
+    /**
+     * @param afterId
+     * @param limit
+     * @return events with an id greater than afterId, ascending
+     */
+    List<EmployeeChangeEvent> findAfterId(long afterId, int limit);
+
+    /**
+     * @return id of the newest event, 0 when there is none
+     */
+    long findLastId();
+
+    /**
+     * Reads the sink's checkpoint with a locking read (created at 0 the first time), a second relay
+     * (another app node) waits for the current transaction to end
+     * @param sink
+     * @return id of the last event handed to the sink
+     */
+    long lockCheckpoint(String sink);
+
+    /**
+     * @param sink - locked by lockCheckpoint in the current transaction
+     * @param lastEventId
+     */
+    void saveCheckpoint(String sink, long lastEventId);
+
+    /**
+     * @param beforeId - events from this id on are kept
+     * @param createdBefore - newer events are kept
+     * @return number of events deleted
+     */
+    int deleteBefore(long beforeId, DateTime createdBefore);
+}
@@ -0,0 +1,39 @@
+package com.marcuschiu.data.repository.v1.dao;
+
+import com.marcuschiu.data.model.entity.SalaryTotals;
+import com.marcuschiu.data.model.summary.SalaryTotalsChange;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The summary table SALARY_BY_JOINING_YEAR, kept in step with EMPLOYEE in the same transaction as every write to it
+ */
+public interface SalaryTotalsDao {
+
+    /**
+     * Reads the joining dates and salaries of the employees with a locking read (select ... for update),
+     * so they cannot change until the current transaction ends, bulk.chunkSize ids per statement
+     * @param ids - unknown ids are left out
+     * @return SalaryTotalsChange - what these employees add to the totals
+     */
+    SalaryTotalsChange lockShares(Collection<Integer> ids);
+
+    /**
+     * Adds the deltas to the totals in the current transaction, creating missing years
+     * @param change
+     */
+    void apply(SalaryTotalsChange change);
+
+    /**
+     * @return totals of the years having employees, ascending, nothing but the summary table is read
+     */
+    List<SalaryTotals> findAll();
+
+    /**
+     * Recomputes every year from EMPLOYEE, repairs drift (writes that bypassed EmployeeService, e.g.
+     * EmployeeRepository or SQL run by hand); writers wait for the current transaction to end
+     * @return number of years
+     */
+    int rebuild();
+}
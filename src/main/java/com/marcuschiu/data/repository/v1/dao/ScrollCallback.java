@@ -0,0 +1,17 @@
+package com.marcuschiu.data.repository.v1.dao;
+
+import java.io.IOException;
+
+/**
+ * Receives rows one at a time while a DAO streams through a result set
+ * rows are not kept anywhere once the callback returns
+ * @param <T> - row type
+ */
+public interface ScrollCallback<T> {
+
+    /**
+     * @param row
+     * @throws IOException - typically the output being written to failed, stops the scroll
+     */
+    void process(T row) throws IOException;
+}
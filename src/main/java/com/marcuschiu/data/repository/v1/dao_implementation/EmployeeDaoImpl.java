@@ -1,14 +1,41 @@
 package com.marcuschiu.data.repository.v1.dao_implementation;
 
+import com.marcuschiu.data.model.bulk.EmployeeBulkUpdate;
+import com.marcuschiu.data.model.embeddable.Name;
 import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.data.model.entity.Phone;
+import com.marcuschiu.data.model.projection.EmployeeSummary;
+import com.marcuschiu.data.model.projection.EmployeeVersion;
 import com.marcuschiu.data.repository.v1.dao.AbstractDao;
 import com.marcuschiu.data.repository.v1.dao.EmployeeDao;
-import org.hibernate.Criteria;
+import com.marcuschiu.data.repository.v1.dao.ScrollCallback;
+import org.hibernate.Cache;
+import org.hibernate.HibernateException;
 import org.hibernate.Query;
-import org.hibernate.criterion.Restrictions;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+import org.hibernate.jdbc.Work;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by marcus.chiu on 10/17/16.
@@ -18,6 +45,17 @@ import java.util.List;
 @Repository("employeeDao")
 public class EmployeeDaoImpl extends AbstractDao<Integer, Employee> implements EmployeeDao {
 
+    /**
+     * role of Employee.phones in the second-level cache
+     */
+    private static final String PHONES_ROLE = Employee.class.getName() + ".phones";
+
+    @Value("${export.fetchSize:-2147483648}")
+    private int scrollFetchSize;
+
+    // false once the table statistics turned out to be missing (not MySQL), see estimateCount
+    private volatile boolean statisticsAvailable = true;
+
     @Override
     public Employee findOne(int id) {
         //getByKey(int id) is defined in the AbstractDao abstract class
@@ -30,12 +68,261 @@ public class EmployeeDaoImpl extends AbstractDao<Integer, Employee> implements E
         persist(employee);
     }
 
+    /**
+     * EMPLOYEE ids are IDENTITY generated, which keeps Hibernate from batching
+     * inserts (it needs every generated id back), so this goes through plain JDBC
+     * on the session's connection, i.e. inside the current transaction
+     */
     @Override
-    public void deleteEmployeeBySsn(String ssn) {
-        //getSession() is defined in the AbstractDao abstract class
-        Query query = getSession().createSQLQuery("delete from Employee where ssn = :ssn");
-        query.setString("ssn", ssn);
-        query.executeUpdate();
+    public void batchInsert(final List<Employee> employees) {
+        if (employees.isEmpty()) {
+            return;
+        }
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "insert into EMPLOYEE (name, ssn, joining_date, birth_date, salary, text, first, middle, last) " +
+                        "values (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    for (Employee employee : employees) {
+                        Name name = employee.getNameTwo() == null ? new Name() : employee.getNameTwo();
+                        statement.setString(1, employee.getName());
+                        statement.setString(2, employee.getSsn());
+                        statement.setDate(3, Date.valueOf(employee.getJoiningDate().toString()));
+                        statement.setDate(4, Date.valueOf(employee.getBirthDate().toString()));
+                        statement.setBigDecimal(5, employee.getSalary());
+                        statement.setString(6, employee.getText());
+                        statement.setString(7, name.getFirst());
+                        statement.setString(8, name.getMiddle());
+                        statement.setString(9, name.getLast());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+        });
+
+        // Hibernate did not see these inserts, cached "no employee with this ssn" results are now wrong
+        final Cache cache = secondLevelCache();
+        evictNowAndAfterCompletion(new Runnable() {
+            @Override
+            public void run() {
+                cache.evictQueryRegion(Employee.QUERY_CACHE_SSN);
+            }
+        });
+    }
+
+    /**
+     * Plain JDBC on the session's connection, like batchInsert: an HQL update would make Hibernate
+     * evict the whole employee cache region (and invalidate every cached employee query) for one row,
+     * here only this employee is evicted
+     */
+    @Override
+    public boolean updateIfVersion(final Employee employee) {
+        final int id = employee.getId();
+        final int[] updated = new int[1];
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "update EMPLOYEE set name = ?, ssn = ?, joining_date = ?, birth_date = ?, salary = ?, text = ?, " +
+                        "version = version + 1, last_modified = ? where id = ? and version = ?")) {
+                    statement.setString(1, employee.getName());
+                    statement.setString(2, employee.getSsn());
+                    statement.setDate(3, Date.valueOf(employee.getJoiningDate().toString()));
+                    statement.setDate(4, Date.valueOf(employee.getBirthDate().toString()));
+                    statement.setBigDecimal(5, employee.getSalary());
+                    statement.setString(6, employee.getText());
+                    statement.setTimestamp(7, new Timestamp(System.currentTimeMillis()));
+                    statement.setInt(8, id);
+                    statement.setInt(9, employee.getVersion());
+                    updated[0] = statement.executeUpdate();
+                }
+            }
+        });
+
+        if (updated[0] == 0) {
+            return false;
+        }
+        // Hibernate did not see this update, its cached copy and cached ssn lookups are now wrong
+        final Cache cache = secondLevelCache();
+        evictNowAndAfterCompletion(new Runnable() {
+            @Override
+            public void run() {
+                cache.evictEntity(Employee.class, id);
+                cache.evictQueryRegion(Employee.QUERY_CACHE_SSN);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public Map<Integer, String> findIdsBySsns(Collection<String> ssns) {
+        return findIdSsnPairs(Employee.QUERY_FIND_IDS_BY_SSNS, "ssns", ssns);
+    }
+
+    @Override
+    public Map<Integer, String> findSsnsByIds(Collection<Integer> ids) {
+        return findIdSsnPairs(Employee.QUERY_FIND_SSNS_BY_IDS, "ids", ids);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Integer, String> findIdSsnPairs(String queryName, String parameter, Collection<?> values) {
+        Map<Integer, String> ssnsById = new HashMap<>();
+        for (List<?> chunk : chunks(values)) {
+            Query query = getNamedQuery(queryName);
+            query.setParameterList(parameter, chunk);
+            for (Object[] row : (List<Object[]>) query.list()) {
+                ssnsById.put((Integer) row[0], (String) row[1]);
+            }
+        }
+        return ssnsById;
+    }
+
+    /**
+     * Plain JDBC like updateIfVersion: an HQL bulk delete would evict every employee (and phone) region
+     * and could not delete the phones by employee, here only the given employees are evicted
+     * the phones go first, PHONE.employee_id has no foreign key in the schema and would be left orphaned
+     */
+    @Override
+    public int deleteByIds(Collection<Integer> ids) {
+        final List<List<Integer>> chunks = chunks(ids);
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+        // pending changes of these employees (or their phones) must not be flushed after their rows are gone
+        getSession().flush();
+        evictFromSession(ids);
+
+        final int[] deleted = new int[1];
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                for (List<Integer> chunk : chunks) {
+                    String in = placeholders(chunk.size());
+                    try (PreparedStatement phones = connection.prepareStatement(
+                            "delete from PHONE where employee_id in " + in)) {
+                        setIds(phones, 1, chunk);
+                        phones.executeUpdate();
+                    }
+                    try (PreparedStatement employees = connection.prepareStatement(
+                            "delete from EMPLOYEE where id in " + in)) {
+                        setIds(employees, 1, chunk);
+                        deleted[0] += employees.executeUpdate();
+                    }
+                }
+            }
+        });
+
+        final List<Integer> evicted = new ArrayList<>(ids);
+        final Cache cache = secondLevelCache();
+        evictNowAndAfterCompletion(new Runnable() {
+            @Override
+            public void run() {
+                evictFromCache(cache, evicted);
+                // phone ids are not known without reading them first, the region is small next to the rows deleted
+                cache.evictEntityRegion(Phone.class);
+                cache.evictQueryRegion(Employee.QUERY_CACHE_SSN);
+            }
+        });
+        return deleted[0];
+    }
+
+    /**
+     * Plain JDBC for the same reason as deleteByIds, the ssn is not changed so cached ssn lookups stay valid
+     * (they hold ids, the employees themselves are evicted)
+     */
+    @Override
+    public int updateByIds(Collection<Integer> ids, final EmployeeBulkUpdate update) {
+        final List<List<Integer>> chunks = chunks(ids);
+        if (chunks.isEmpty() || update.isEmpty()) {
+            return 0;
+        }
+        getSession().flush();
+        evictFromSession(ids);
+
+        final StringBuilder set = new StringBuilder("update EMPLOYEE set ");
+        if (update.getSalary() != null) {
+            set.append("salary = ?, ");
+        } else if (update.getSalaryFactor() != null) {
+            set.append("salary = salary * ?, ");
+        }
+        if (update.getText() != null) {
+            set.append("text = ?, ");
+        }
+        if (update.getJoiningDate() != null) {
+            set.append("joining_date = ?, ");
+        }
+        set.append("version = version + 1, last_modified = ? where id in ");
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        final int[] updated = new int[1];
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                for (List<Integer> chunk : chunks) {
+                    try (PreparedStatement statement = connection.prepareStatement(set + placeholders(chunk.size()))) {
+                        int index = 1;
+                        if (update.getSalary() != null) {
+                            statement.setBigDecimal(index++, update.getSalary());
+                        } else if (update.getSalaryFactor() != null) {
+                            statement.setBigDecimal(index++, update.getSalaryFactor());
+                        }
+                        if (update.getText() != null) {
+                            statement.setString(index++, update.getText());
+                        }
+                        if (update.getJoiningDate() != null) {
+                            statement.setDate(index++, Date.valueOf(update.getJoiningDate().toString()));
+                        }
+                        statement.setTimestamp(index++, now);
+                        setIds(statement, index, chunk);
+                        updated[0] += statement.executeUpdate();
+                    }
+                }
+            }
+        });
+
+        final List<Integer> evicted = new ArrayList<>(ids);
+        final Cache cache = secondLevelCache();
+        evictNowAndAfterCompletion(new Runnable() {
+            @Override
+            public void run() {
+                evictFromCache(cache, evicted);
+            }
+        });
+        return updated[0];
+    }
+
+    /**
+     * Hibernate did not see these statements, drops its cached copies of the employees and their phone lists
+     */
+    private static void evictFromCache(Cache cache, Collection<Integer> ids) {
+        for (Integer id : ids) {
+            cache.evictEntity(Employee.class, id);
+            cache.evictCollection(PHONES_ROLE, id);
+        }
+    }
+
+    private Cache secondLevelCache() {
+        return getSession().getSessionFactory().getCache();
+    }
+
+    /**
+     * Runs the evictions now and, inside a transaction, once more after it completes, like EmployeeSsnCache.invalidate:
+     * the JDBC statements take no second-level cache locks, so a read that misses before the commit loads
+     * the old committed row and puts it back, where it would stay for the region's whole TTL
+     * @param evictions - must not use the session, it may be closed by the time the transaction completes
+     */
+    private void evictNowAndAfterCompletion(final Runnable evictions) {
+        evictions.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictions.run();
+                }
+            });
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -46,8 +333,11 @@ public class EmployeeDaoImpl extends AbstractDao<Integer, Employee> implements E
         return (List<Employee>) criteria.list();*/
 
         //Hibernate way using Query
-        Query query = getSession().createQuery("from Employee");
-        return (List<Employee>) query.list();
+        /*Query query = getSession().createQuery("from Employee");
+        return (List<Employee>) query.list();*/
+
+        //Hibernate way using a named Query (parsed once at startup)
+        return (List<Employee>) getNamedQuery(Employee.QUERY_FIND_ALL).list();
 
         //JPA way using Query
         //List<Employee> employees = entityManager.createQuery("SELECT e FROM employee e").getResultList();
@@ -59,10 +349,163 @@ public class EmployeeDaoImpl extends AbstractDao<Integer, Employee> implements E
         return employees;*/
     }
 
+    /**
+     * cached in the query cache region Employee.QUERY_CACHE_SSN (hints on the named query)
+     */
     @Override
     public Employee findOneBySsn(String ssn) {
-        Criteria criteria = createEntityCriteria();
-        criteria.add(Restrictions.eq("ssn", ssn));
-        return (Employee) criteria.uniqueResult();
+        Query query = getNamedQuery(Employee.QUERY_FIND_BY_SSN);
+        query.setString("ssn", ssn);
+        return (Employee) query.uniqueResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Set<String> findExistingSsns(Collection<String> ssns) {
+        if (ssns.isEmpty()) {
+            return new HashSet<>();
+        }
+        Query query = getNamedQuery(Employee.QUERY_FIND_SSNS_IN);
+        query.setParameterList("ssns", ssns);
+        return new HashSet<>((List<String>) query.list());
+    }
+
+    @Override
+    public void initializePhones(List<Employee> employees) {
+        List<Object> phones = new ArrayList<>(employees.size());
+        for (Employee employee : employees) {
+            phones.add(employee.getPhones());
+        }
+        initialize(phones);
+    }
+
+    /**
+     * Scalar projection (no entities are built by Hibernate) over a stateless session
+     * the MySQL driver only streams rows instead of buffering the whole result
+     * when the fetch size is Integer.MIN_VALUE, see export.fetchSize
+     */
+    @Override
+    public void scrollAll(ScrollCallback<Employee> callback) throws IOException {
+        StatelessSession session = openStatelessSession();
+        try {
+            Query query = session.getNamedQuery(Employee.QUERY_SCROLL_ALL);
+            query.setFetchSize(scrollFetchSize);
+            ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (results.next()) {
+                    Object[] row = results.get();
+                    Employee employee = new Employee();
+                    employee.setId((Integer) row[0]);
+                    employee.setName((String) row[1]);
+                    employee.setSsn((String) row[2]);
+                    employee.setJoiningDate((LocalDate) row[3]);
+                    employee.setBirthDate((LocalDate) row[4]);
+                    employee.setSalary((BigDecimal) row[5]);
+                    employee.setText((String) row[6]);
+                    Name name = new Name();
+                    name.setFirst((String) row[7]);
+                    name.setMiddle((String) row[8]);
+                    name.setLast((String) row[9]);
+                    employee.setNameTwo(name);
+                    callback.process(employee);
+                }
+            } finally {
+                results.close();
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<Employee> findPageAfterId(int afterId, int limit) {
+        Query query = getNamedQuery(Employee.QUERY_FIND_PAGE_AFTER_ID);
+        query.setInteger("afterId", afterId);
+        query.setMaxResults(limit);
+        return (List<Employee>) query.list();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<Employee> findPageBeforeId(int beforeId, int limit) {
+        Query query = getNamedQuery(Employee.QUERY_FIND_PAGE_BEFORE_ID);
+        query.setInteger("beforeId", beforeId);
+        query.setMaxResults(limit);
+        return (List<Employee>) query.list();
+    }
+
+    @Override
+    public Long estimateCount() {
+        if (!statisticsAvailable) {
+            return null;
+        }
+        try {
+            Object estimate = getNamedQuery(Employee.QUERY_ESTIMATE_COUNT).uniqueResult();
+            if (estimate instanceof Number) {
+                return ((Number) estimate).longValue();
+            }
+        } catch (HibernateException e) {
+            //no information_schema.TABLES.TABLE_ROWS on this database, not asked again
+            statisticsAvailable = false;
+        }
+        return null;
+    }
+
+    @Override
+    public EmployeeSummary findSummaryById(int id) {
+        Query query = getNamedQuery(Employee.QUERY_SUMMARY_BY_ID);
+        query.setInteger("id", id);
+        return (EmployeeSummary) query.uniqueResult();
+    }
+
+    @Override
+    public EmployeeSummary findSummaryBySsn(String ssn) {
+        Query query = getNamedQuery(Employee.QUERY_SUMMARY_BY_SSN);
+        query.setString("ssn", ssn);
+        return (EmployeeSummary) query.uniqueResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<EmployeeSummary> findSummaryPageAfterId(int afterId, int limit) {
+        Query query = getNamedQuery(Employee.QUERY_SUMMARY_PAGE_AFTER_ID);
+        query.setInteger("afterId", afterId);
+        query.setMaxResults(limit);
+        return (List<EmployeeSummary>) query.list();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<EmployeeSummary> findSummaryPageBeforeId(int beforeId, int limit) {
+        Query query = getNamedQuery(Employee.QUERY_SUMMARY_PAGE_BEFORE_ID);
+        query.setInteger("beforeId", beforeId);
+        query.setMaxResults(limit);
+        return (List<EmployeeSummary>) query.list();
+    }
+
+    @Override
+    public EmployeeVersion findVersionBySsn(String ssn) {
+        Query query = getNamedQuery(Employee.QUERY_VERSION_BY_SSN);
+        query.setString("ssn", ssn);
+        return (EmployeeVersion) query.uniqueResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<EmployeeVersion> findVersionsPageAfterId(int afterId, int limit) {
+        Query query = getNamedQuery(Employee.QUERY_VERSIONS_PAGE_AFTER_ID);
+        query.setInteger("afterId", afterId);
+        query.setMaxResults(limit);
+        return (List<EmployeeVersion>) query.list();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<EmployeeVersion> findVersionsPageBeforeId(int beforeId, int limit) {
+        Query query = getNamedQuery(Employee.QUERY_VERSIONS_PAGE_BEFORE_ID);
+        query.setInteger("beforeId", beforeId);
+        query.setMaxResults(limit);
+        return (List<EmployeeVersion>) query.list();
     }
 }
@@ -0,0 +1,180 @@
+package com.marcuschiu.data.repository.v1.dao_implementation;
+
+import com.marcuschiu.data.model.entity.EmployeeChangeEvent;
+import com.marcuschiu.data.repository.v1.dao.AbstractDao;
+import com.marcuschiu.data.repository.v1.dao.EmployeeOutboxDao;
+import org.hibernate.Query;
+import org.hibernate.jdbc.Work;
+import org.joda.time.DateTime;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends with plain JDBC on the session's connection (like EmployeeDaoImpl's bulk statements),
+ * so the events commit or roll back with the change they describe
+ * the events copy the employee rows as the database has them after the change (version, salary * factor)
+ * appends lock the row of OUTBOX_APPEND_LOCK first, until the transaction ends: ids are taken and committed in
+ * the same order, EmployeeOutboxRelay relies on it. The lock is the last one a write takes (after its EMPLOYEE
+ * and SALARY_BY_JOINING_YEAR rows), so writers only queue up for the append and the commit
+ */
+@Repository("employeeOutboxDao")
+public class EmployeeOutboxDaoImpl extends AbstractDao<Long, EmployeeChangeEvent> implements EmployeeOutboxDao {
+
+    private static final String INSERT = "insert into EMPLOYEE_OUTBOX (type, employee_id, ssn, version, name, first, middle, " +
+            "last, joining_date, birth_date, salary, text, created_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Override
+    public void appendChanged(final EmployeeChangeEvent.Type type, Collection<Integer> ids) {
+        final List<List<Integer>> chunks = chunks(ids);
+        if (chunks.isEmpty()) {
+            return;
+        }
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                lockAppends(connection);
+                try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                    for (List<Integer> chunk : chunks) {
+                        try (PreparedStatement select = connection.prepareStatement(
+                                "select id, ssn, version, name, first, middle, last, joining_date, birth_date, salary, text " +
+                                "from EMPLOYEE where id in " + placeholders(chunk.size()) + " order by id")) {
+                            setIds(select, 1, chunk);
+                            try (ResultSet rows = select.executeQuery()) {
+                                while (rows.next()) {
+                                    insert.setString(1, type.name());
+                                    insert.setInt(2, rows.getInt(1));
+                                    insert.setString(3, rows.getString(2));
+                                    insert.setInt(4, rows.getInt(3));
+                                    for (int column = 4; column <= 11; column++) {
+                                        insert.setObject(column + 1, rows.getObject(column));
+                                    }
+                                    insert.setTimestamp(13, now);
+                                    insert.addBatch();
+                                }
+                            }
+                        }
+                        insert.executeBatch();
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void appendDeleted(final Map<Integer, String> ssnsById) {
+        if (ssnsById.isEmpty()) {
+            return;
+        }
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                lockAppends(connection);
+                try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                    for (Map.Entry<Integer, String> employee : ssnsById.entrySet()) {
+                        insert.setString(1, EmployeeChangeEvent.Type.DELETED.name());
+                        insert.setInt(2, employee.getKey());
+                        insert.setString(3, employee.getValue());
+                        for (int column = 4; column <= 12; column++) {
+                            insert.setObject(column, null);
+                        }
+                        insert.setTimestamp(13, now);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+            }
+        });
+    }
+
+    /**
+     * Held until the current transaction commits or rolls back, a second appending transaction waits here
+     */
+    private static void lockAppends(Connection connection) throws SQLException {
+        try (PreparedStatement lock = connection.prepareStatement("select id from OUTBOX_APPEND_LOCK where id = 1 for update");
+             ResultSet row = lock.executeQuery()) {
+            row.next();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<EmployeeChangeEvent> findAfterId(long afterId, int limit) {
+        Query query = getNamedQuery(EmployeeChangeEvent.QUERY_FIND_AFTER_ID);
+        query.setLong("afterId", afterId);
+        query.setMaxResults(limit);
+        return (List<EmployeeChangeEvent>) query.list();
+    }
+
+    @Override
+    public long findLastId() {
+        Number last = (Number) getNamedQuery(EmployeeChangeEvent.QUERY_FIND_LAST_ID).uniqueResult();
+        return last == null ? 0 : last.longValue();
+    }
+
+    @Override
+    public long lockCheckpoint(final String sink) {
+        final long[] checkpoint = new long[1];
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (PreparedStatement create = connection.prepareStatement(
+                        "insert into OUTBOX_CHECKPOINT (sink, last_event_id) values (?, 0) on duplicate key update sink = sink")) {
+                    create.setString(1, sink);
+                    create.executeUpdate();
+                }
+                try (PreparedStatement select = connection.prepareStatement(
+                        "select last_event_id from OUTBOX_CHECKPOINT where sink = ? for update")) {
+                    select.setString(1, sink);
+                    try (ResultSet row = select.executeQuery()) {
+                        row.next();
+                        checkpoint[0] = row.getLong(1);
+                    }
+                }
+            }
+        });
+        return checkpoint[0];
+    }
+
+    @Override
+    public void saveCheckpoint(final String sink, final long lastEventId) {
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (PreparedStatement update = connection.prepareStatement(
+                        "update OUTBOX_CHECKPOINT set last_event_id = ?, updated_at = ? where sink = ?")) {
+                    update.setLong(1, lastEventId);
+                    update.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+                    update.setString(3, sink);
+                    update.executeUpdate();
+                }
+            }
+        });
+    }
+
+    @Override
+    public int deleteBefore(final long beforeId, final DateTime createdBefore) {
+        final int[] deleted = new int[1];
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (PreparedStatement delete = connection.prepareStatement(
+                        "delete from EMPLOYEE_OUTBOX where id < ? and created_at < ?")) {
+                    delete.setLong(1, beforeId);
+                    delete.setTimestamp(2, new Timestamp(createdBefore.getMillis()));
+                    deleted[0] = delete.executeUpdate();
+                }
+            }
+        });
+        return deleted[0];
+    }
+}
@@ -3,9 +3,7 @@ package com.marcuschiu.data.repository.v1.dao_implementation;
 import com.marcuschiu.data.model.entity.Phone;
 import com.marcuschiu.data.repository.v1.dao.AbstractDao;
 import com.marcuschiu.data.repository.v1.dao.PhoneDao;
-import org.hibernate.Criteria;
 import org.hibernate.Query;
-import org.hibernate.criterion.Restrictions;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -28,7 +26,7 @@ public class PhoneDaoImpl extends AbstractDao<Integer, Phone> implements PhoneDa
 
     @Override
     public void deletePhoneById(int id) {
-        Query query = getSession().createSQLQuery("delete from Employee where phone_id = :id");
+        Query query = getNamedQuery(Phone.QUERY_DELETE_BY_ID);
         query.setInteger("id", id);
         query.executeUpdate();
     }
@@ -36,14 +34,13 @@ public class PhoneDaoImpl extends AbstractDao<Integer, Phone> implements PhoneDa
     @SuppressWarnings("unchecked")
     @Override
     public List<Phone> findAllPhones() {
-        Criteria criteria = createEntityCriteria();
-        return (List<Phone>) criteria.list();
+        return (List<Phone>) getNamedQuery(Phone.QUERY_FIND_ALL).list();
     }
 
     @Override
     public Phone findPhoneByNumber(String number) {
-        Criteria criteria = createEntityCriteria();
-        criteria.add(Restrictions.eq("number", number));
-        return (Phone) criteria.uniqueResult();
+        Query query = getNamedQuery(Phone.QUERY_FIND_BY_NUMBER);
+        query.setString("number", number);
+        return (Phone) query.uniqueResult();
     }
 }
@@ -0,0 +1,109 @@
+package com.marcuschiu.data.repository.v1.dao_implementation;
+
+import com.marcuschiu.data.model.entity.SalaryTotals;
+import com.marcuschiu.data.model.summary.SalaryTotalsChange;
+import com.marcuschiu.data.repository.v1.dao.AbstractDao;
+import com.marcuschiu.data.repository.v1.dao.SalaryTotalsDao;
+import org.hibernate.jdbc.Work;
+import org.joda.time.LocalDate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Plain JDBC on the session's connection (like EmployeeDaoImpl's bulk statements), so the totals change
+ * in the same transaction as the employees
+ * a year's row is locked by every transaction writing employees of that year until it ends, the rows
+ * are always updated in ascending year order so two writers cannot deadlock on them
+ */
+@Repository("salaryTotalsDao")
+public class SalaryTotalsDaoImpl extends AbstractDao<Integer, SalaryTotals> implements SalaryTotalsDao {
+
+    @Override
+    public SalaryTotalsChange lockShares(Collection<Integer> ids) {
+        final List<List<Integer>> chunks = chunks(ids);
+        final SalaryTotalsChange shares = new SalaryTotalsChange();
+        if (chunks.isEmpty()) {
+            return shares;
+        }
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                for (List<Integer> chunk : chunks) {
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            "select joining_date, salary from EMPLOYEE where id in " + placeholders(chunk.size()) + " for update")) {
+                        setIds(statement, 1, chunk);
+                        try (ResultSet rows = statement.executeQuery()) {
+                            while (rows.next()) {
+                                shares.add(LocalDate.fromDateFields(rows.getDate(1)), rows.getBigDecimal(2));
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return shares;
+    }
+
+    /**
+     * One batched upsert (MySQL's insert ... on duplicate key update) per change
+     */
+    @Override
+    public void apply(final SalaryTotalsChange change) {
+        final List<Integer> years = change.years();
+        if (years.isEmpty()) {
+            return;
+        }
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "insert into SALARY_BY_JOINING_YEAR (joining_year, headcount, total_salary) values (?, ?, ?) " +
+                        "on duplicate key update headcount = headcount + values(headcount), " +
+                        "total_salary = total_salary + values(total_salary)")) {
+                    for (Integer year : years) {
+                        statement.setInt(1, year);
+                        statement.setInt(2, change.headcount(year));
+                        statement.setBigDecimal(3, change.totalSalary(year));
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<SalaryTotals> findAll() {
+        return (List<SalaryTotals>) getNamedQuery(SalaryTotals.QUERY_FIND_ALL).list();
+    }
+
+    /**
+     * The delete locks every row of the summary (on InnoDB also the gaps between them), writers queue up
+     * behind it, and the insert's select of EMPLOYEE is a locking read of the latest committed rows
+     */
+    @Override
+    public int rebuild() {
+        final int[] years = new int[1];
+        getSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (PreparedStatement delete = connection.prepareStatement("delete from SALARY_BY_JOINING_YEAR")) {
+                    delete.executeUpdate();
+                }
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "insert into SALARY_BY_JOINING_YEAR (joining_year, headcount, total_salary) " +
+                        "select year(joining_date), count(*), sum(round(salary, 2)) from EMPLOYEE group by year(joining_date)")) {
+                    years[0] = insert.executeUpdate();
+                }
+            }
+        });
+        return years[0];
+    }
+}
@@ -0,0 +1,11 @@
+package com.marcuschiu.metrics;
+
+import com.codahale.metrics.Gauge;
+
+/**
+ * Gauge over a running total kept elsewhere (Guava's CacheStats, Hibernate's Statistics)
+ * the value only grows, PrometheusTextWriter exports it as a counter (name_total) like a Counter,
+ * so rate() works on it
+ */
+public abstract class CountGauge implements Gauge<Long> {
+}
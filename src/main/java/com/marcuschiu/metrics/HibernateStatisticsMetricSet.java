@@ -0,0 +1,129 @@
+package com.marcuschiu.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.RatioGauge;
+import org.hibernate.stat.Statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gauges over a SessionFactory's Statistics (needs hibernate.generate_statistics=true)
+ * the counts are totals since the factory started (CountGauges), the hit ratios too
+ */
+public class HibernateStatisticsMetricSet implements MetricSet {
+
+    private final Statistics statistics;
+
+    public HibernateStatisticsMetricSet(Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+
+        metrics.put("sessions.opened", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getSessionOpenCount(); }
+        });
+        metrics.put("transactions", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getTransactionCount(); }
+        });
+        metrics.put("flushes", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getFlushCount(); }
+        });
+        metrics.put("statements.prepared", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getPrepareStatementCount(); }
+        });
+        metrics.put("optimisticFailures", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getOptimisticFailureCount(); }
+        });
+
+        metrics.put("queries.executed", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getQueryExecutionCount(); }
+        });
+        metrics.put("queries.maxTimeMillis", new Gauge<Long>() {
+            @Override
+            public Long getValue() { return statistics.getQueryExecutionMaxTime(); }
+        });
+
+        metrics.put("entities.loaded", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getEntityLoadCount(); }
+        });
+        metrics.put("entities.fetched", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getEntityFetchCount(); }
+        });
+        metrics.put("entities.inserted", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getEntityInsertCount(); }
+        });
+        metrics.put("entities.updated", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getEntityUpdateCount(); }
+        });
+        metrics.put("entities.deleted", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getEntityDeleteCount(); }
+        });
+        metrics.put("collections.loaded", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getCollectionLoadCount(); }
+        });
+        metrics.put("collections.fetched", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getCollectionFetchCount(); }
+        });
+
+        metrics.put("secondLevelCache.hits", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getSecondLevelCacheHitCount(); }
+        });
+        metrics.put("secondLevelCache.misses", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getSecondLevelCacheMissCount(); }
+        });
+        metrics.put("secondLevelCache.puts", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getSecondLevelCachePutCount(); }
+        });
+        metrics.put("secondLevelCache.hitRatio", new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                long hits = statistics.getSecondLevelCacheHitCount();
+                return Ratio.of(hits, hits + statistics.getSecondLevelCacheMissCount());
+            }
+        });
+
+        metrics.put("queryCache.hits", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getQueryCacheHitCount(); }
+        });
+        metrics.put("queryCache.misses", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getQueryCacheMissCount(); }
+        });
+        metrics.put("queryCache.puts", new CountGauge() {
+            @Override
+            public Long getValue() { return statistics.getQueryCachePutCount(); }
+        });
+        metrics.put("queryCache.hitRatio", new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                long hits = statistics.getQueryCacheHitCount();
+                return Ratio.of(hits, hits + statistics.getQueryCacheMissCount());
+            }
+        });
+
+        return metrics;
+    }
+}
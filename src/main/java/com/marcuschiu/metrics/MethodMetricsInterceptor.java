@@ -0,0 +1,66 @@
+package com.marcuschiu.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ClassFilter;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.RootClassFilter;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times calls to the methods of one service interface into the timer
+ * service.calls{service="IEmployeeService",method="findEmployeeBySsn",outcome="success"}
+ * outcome is "error" when the method threw
+ * overloads share a timer, the interfaces here do not overload
+ */
+public class MethodMetricsInterceptor implements MethodInterceptor {
+
+    private final MetricRegistry metricRegistry;
+
+    private final String service;
+
+    public MethodMetricsInterceptor(MetricRegistry metricRegistry, Class<?> serviceInterface) {
+        this.metricRegistry = metricRegistry;
+        this.service = serviceInterface.getSimpleName();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            Object result = invocation.proceed();
+            outcome = "success";
+            return result;
+        } finally {
+            metricRegistry.timer(MetricNames.tagged("service.calls",
+                    "service", service,
+                    "method", invocation.getMethod().getName(),
+                    "outcome", outcome))
+                    .update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param serviceInterface
+     * @return Pointcut - the methods declared by serviceInterface, on any class implementing it
+     */
+    public static Pointcut pointcut(final Class<?> serviceInterface) {
+        return new StaticMethodMatcherPointcut() {
+            @Override
+            public ClassFilter getClassFilter() {
+                return new RootClassFilter(serviceInterface);
+            }
+
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return ClassUtils.hasMethod(serviceInterface, method.getName(), method.getParameterTypes());
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.marcuschiu.metrics;
+
+/**
+ * Metric names with labels, e.g. http.requests{method="GET",pattern="/employees"}
+ * MetricRegistry only knows flat names, the label part is carried in the name as is and
+ * PrometheusTextWriter writes it out as the sample's label set
+ */
+public final class MetricNames {
+
+    private MetricNames() {
+    }
+
+    /**
+     * @param name - metric family name, e.g. http.requests
+     * @param labels - label name, value, label name, value, ...
+     * @return name{label="value",...}
+     */
+    public static String tagged(String name, String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be name/value pairs");
+        }
+        if (labels.length == 0) {
+            return name;
+        }
+        StringBuilder builder = new StringBuilder(name).append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(labels[i]).append("=\"");
+            appendEscaped(builder, labels[i + 1] == null ? "" : labels[i + 1]);
+            builder.append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * label values escape backslash, double quote and line feed (Prometheus text format)
+     */
+    private static void appendEscaped(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.marcuschiu.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.util.Map;
+
+/**
+ * Registers every MetricSet bean in the MetricRegistry once the context is refreshed,
+ * the bean name is the prefix of its metrics (a MetricSet bean "hibernate" with a
+ * gauge "flushes" becomes "hibernate.flushes")
+ * this way the components that own the numbers (caches, session factories) need no
+ * dependency on the registry
+ */
+public class MetricSetRegistrar implements ApplicationListener<ContextRefreshedEvent>, ApplicationContextAware {
+
+    private final MetricRegistry metricRegistry;
+
+    private ApplicationContext applicationContext;
+
+    private boolean registered;
+
+    public MetricSetRegistrar(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public synchronized void onApplicationEvent(ContextRefreshedEvent event) {
+        // child contexts publish their refresh to this context too
+        if (registered || event.getApplicationContext() != applicationContext) {
+            return;
+        }
+        registered = true;
+        for (Map.Entry<String, MetricSet> entry : applicationContext.getBeansOfType(MetricSet.class).entrySet()) {
+            // MetricRegistry is a MetricSet itself
+            if (entry.getValue() != metricRegistry) {
+                metricRegistry.register(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.marcuschiu.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a MetricRegistry in the Prometheus text exposition format (version 0.0.4)
+ * - names are sanitized (dots and other characters become '_'), labels come from MetricNames.tagged
+ * - gauges become gauges; counters, CountGauges and meters become counters (name_total),
+ *   the application's Counters are only ever incremented
+ * - timers become summaries in seconds (quantiles and _count), histograms summaries in their own unit
+ * samples are buffered and written grouped by family
+ * the quantiles come from the metrics' reservoirs (exponentially decaying, about the last 5 minutes)
+ */
+public class PrometheusTextWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.99, 0.999};
+
+    private static final double SECONDS_PER_NANO = 1.0 / TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * samples by family, a family's samples must be written together under a single # TYPE line
+     */
+    private final Map<String, StringBuilder> families = new TreeMap<>();
+
+    private PrometheusTextWriter() {
+    }
+
+    /**
+     * @param registry
+     * @param writer - not closed, but flushed
+     * @throws IOException
+     */
+    public static void write(MetricRegistry registry, Writer writer) throws IOException {
+        PrometheusTextWriter prometheus = new PrometheusTextWriter();
+        for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+            String name = entry.getKey();
+            Metric metric = entry.getValue();
+            if (metric instanceof CountGauge) {
+                prometheus.sample(name, "_total", "counter", "", ((CountGauge) metric).getValue());
+            } else if (metric instanceof Gauge) {
+                Object value = ((Gauge<?>) metric).getValue();
+                if (value instanceof Number) {
+                    prometheus.sample(name, "", "gauge", "", ((Number) value).doubleValue());
+                } else if (value instanceof Boolean) {
+                    prometheus.sample(name, "", "gauge", "", ((Boolean) value) ? 1 : 0);
+                }
+            } else if (metric instanceof Counter) {
+                prometheus.sample(name, "_total", "counter", "", ((Counter) metric).getCount());
+            } else if (metric instanceof Meter) {
+                prometheus.sample(name, "_total", "counter", "", ((Meter) metric).getCount());
+            } else if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                prometheus.summary(name, "", histogram.getSnapshot(), histogram.getCount(), 1);
+            } else if (metric instanceof Timer) {
+                Timer timer = (Timer) metric;
+                prometheus.summary(name, "_seconds", timer.getSnapshot(), timer.getCount(), SECONDS_PER_NANO);
+            }
+        }
+        for (StringBuilder family : prometheus.families.values()) {
+            writer.append(family);
+        }
+        writer.flush();
+    }
+
+    private void summary(String name, String unit, Snapshot snapshot, long count, double scale) {
+        for (double quantile : QUANTILES) {
+            sample(name, unit, "summary", "quantile=\"" + quantile + "\"", snapshot.getValue(quantile) * scale);
+        }
+        sample(name, unit + "_count", "summary", "", count);
+    }
+
+    /**
+     * @param name - registry name, with or without labels
+     * @param suffix - appended to the sanitized family name (unit, _total, _count)
+     * @param type - written with the first sample of the family
+     * @param extraLabel - label to add to the name's own labels, or ""
+     */
+    private void sample(String name, String suffix, String type, String extraLabel, double value) {
+        int brace = name.indexOf('{');
+        String base = sanitize(brace < 0 ? name : name.substring(0, brace));
+        String labels = brace < 0 ? "" : name.substring(brace + 1, name.length() - 1);
+        if (!extraLabel.isEmpty()) {
+            labels = labels.isEmpty() ? extraLabel : labels + "," + extraLabel;
+        }
+
+        // _count belongs to the summary family declared without it
+        String familyName = suffix.endsWith("_count") ? base + suffix.substring(0, suffix.length() - "_count".length()) : base + suffix;
+        StringBuilder family = families.get(familyName);
+        if (family == null) {
+            family = new StringBuilder("# TYPE ").append(familyName).append(' ').append(type).append('\n');
+            families.put(familyName, family);
+        }
+
+        family.append(base).append(suffix);
+        if (!labels.isEmpty()) {
+            family.append('{').append(labels).append('}');
+        }
+        family.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Prometheus metric names are [a-zA-Z_:][a-zA-Z0-9_:]*
+     */
+    private static String sanitize(String name) {
+        StringBuilder builder = new StringBuilder(name.length() + 1);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':'
+                    || (i > 0 && c >= '0' && c <= '9');
+            builder.append(valid ? c : '_');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.marcuschiu.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every request handled by the DispatcherServlet into the timer
+ * http.requests{method="GET",pattern="/edit-{ssn}-employee",status="200"}
+ * - the mapping pattern, not the URI, so all edit pages share one timer
+ * - from preHandle to afterCompletion, i.e. including view rendering
+ * - async requests from the first preHandle to the afterCompletion of the dispatch that rendered the result,
+ *   i.e. including the wait for a database thread
+ */
+public class RequestMetricsInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String START_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".start";
+
+    private final MetricRegistry metricRegistry;
+
+    public RequestMetricsInterceptor(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // the async dispatch of a request runs the interceptors again
+        if (request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (!(start instanceof Long)) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        // a handler that threw has not set an error status yet
+        int status = (ex != null && response.getStatus() < 400) ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+
+        metricRegistry.timer(MetricNames.tagged("http.requests",
+                "method", request.getMethod(),
+                "pattern", pattern == null ? "UNMAPPED" : pattern.toString(),
+                "status", String.valueOf(status)))
+                .update(System.nanoTime() - (Long) start, TimeUnit.NANOSECONDS);
+    }
+}
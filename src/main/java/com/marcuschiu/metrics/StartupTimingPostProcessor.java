@@ -0,0 +1,270 @@
+package com.marcuschiu.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractAutowireCapableBeanFactory;
+import org.springframework.beans.factory.support.CglibSubclassingInstantiationStrategy;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the creation (instantiation, injection, init methods) of every singleton and logs a report
+ * once the context is refreshed:
+ * - the whole refresh, from when the post processors are registered
+ * - per phase, the beans grouped by the @Configuration class declaring them (or by package for
+ *   scanned components)
+ * - the slowest beans
+ * all of them in own time: a bean created while another one is being created (a dependency)
+ * counts for itself, not for the one that needed it
+ * a bean's time runs from its instantiation (constructor or @Bean method, through the bean factory's
+ * InstantiationStrategy, replaced here) to the end of its initialization (this post processor)
+ * only the thread that refreshes the context is timed and only until the refresh, afterwards
+ * (prototypes, request scoped beans) this costs a boolean check
+ */
+public class StartupTimingPostProcessor
+        implements BeanPostProcessor, PriorityOrdered, BeanFactoryAware, ApplicationContextAware, ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Log log = LogFactory.getLog(StartupTimingPostProcessor.class);
+
+    private final long started = System.nanoTime();
+
+    private final Thread startupThread = Thread.currentThread();
+
+    private final int reportedBeans;
+
+    private final Deque<Creation> creating = new ArrayDeque<>();
+
+    private final List<Creation> created = new ArrayList<>();
+
+    private ConfigurableListableBeanFactory beanFactory;
+
+    private ApplicationContext applicationContext;
+
+    private volatile boolean refreshed;
+
+    /**
+     * @param reportedBeans - how many of the slowest beans the report lists
+     */
+    public StartupTimingPostProcessor(int reportedBeans) {
+        this.reportedBeans = reportedBeans;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        if (beanFactory instanceof ConfigurableListableBeanFactory) {
+            this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+        }
+        if (beanFactory instanceof AbstractAutowireCapableBeanFactory) {
+            ((AbstractAutowireCapableBeanFactory) beanFactory).setInstantiationStrategy(new TimingInstantiationStrategy());
+        }
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    private boolean timing() {
+        return !refreshed && Thread.currentThread() == startupThread;
+    }
+
+    /**
+     * inner beans are part of the bean declaring them
+     */
+    private void instantiating(String beanName) {
+        if (timing() && beanName != null && !beanName.startsWith("(inner bean)")) {
+            creating.push(new Creation(beanName, System.nanoTime()));
+        }
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (timing() && isCreating(beanName)) {
+            // type checks of FactoryBeans and failed autowiring candidates are instantiated without
+            // being initialized, those never get here,
+            // the dependencies created meanwhile belong to the bean below them
+            long stale = 0;
+            while (!creating.peek().beanName.equals(beanName)) {
+                stale += creating.pop().dependencies;
+            }
+            Creation creation = creating.pop();
+            creation.dependencies += stale;
+            creation.total = System.nanoTime() - creation.start;
+            if (!creating.isEmpty()) {
+                creating.peek().dependencies += creation.total;
+            }
+            created.add(creation);
+        }
+        return bean;
+    }
+
+    /**
+     * FactoryBean products come through postProcessAfterInitialization a second time,
+     * under the same name but no longer being created
+     */
+    private boolean isCreating(String beanName) {
+        for (Creation creation : creating) {
+            if (creation.beanName.equals(beanName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // a child context (the DispatcherServlet's) publishes its refresh here as well
+        if (refreshed || event.getApplicationContext() != applicationContext) {
+            return;
+        }
+        refreshed = true;
+        long refresh = System.nanoTime() - started;
+
+        Map<String, long[]> phases = new HashMap<>();
+        for (Creation creation : created) {
+            String phase = phaseOf(creation.beanName);
+            long[] own = phases.get(phase);
+            if (own == null) {
+                own = new long[1];
+                phases.put(phase, own);
+            }
+            own[0] += creation.own();
+        }
+        List<Map.Entry<String, long[]>> phaseList = new ArrayList<>(phases.entrySet());
+        Collections.sort(phaseList, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> a, Map.Entry<String, long[]> b) {
+                return Long.compare(b.getValue()[0], a.getValue()[0]);
+            }
+        });
+        Collections.sort(created, new Comparator<Creation>() {
+            @Override
+            public int compare(Creation a, Creation b) {
+                return Long.compare(b.own(), a.own());
+            }
+        });
+
+        StringBuilder report = new StringBuilder("context refreshed in ").append(millis(refresh)).append(" ms, ")
+                .append(created.size()).append(" beans created");
+        report.append("\n  by phase (own time of the beans):");
+        for (Map.Entry<String, long[]> phase : phaseList) {
+            report.append("\n    ").append(phase.getKey()).append(' ').append(millis(phase.getValue()[0])).append(" ms");
+        }
+        if (reportedBeans > 0) {
+            report.append("\n  slowest beans (own time, without their dependencies):");
+            for (Creation creation : created.subList(0, Math.min(reportedBeans, created.size()))) {
+                report.append("\n    ").append(creation.beanName).append(' ').append(millis(creation.own()))
+                        .append(" ms (").append(phaseOf(creation.beanName)).append(')');
+            }
+        }
+        log.info(report);
+
+        creating.clear();
+        created.clear();
+    }
+
+    /**
+     * @param beanName
+     * @return String - simple name of the @Configuration class declaring the bean,
+     * the package of the bean class for scanned components
+     */
+    private String phaseOf(String beanName) {
+        if (beanFactory == null || !beanFactory.containsBeanDefinition(beanName)) {
+            return "other";
+        }
+        BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+        String factoryBeanName = definition.getFactoryBeanName();
+        if (factoryBeanName != null && beanFactory.containsBeanDefinition(factoryBeanName)) {
+            String configuration = beanFactory.getBeanDefinition(factoryBeanName).getBeanClassName();
+            if (configuration != null) {
+                return ClassUtils.getShortName(configuration).replaceAll("\\$\\$.*", "");
+            }
+        }
+        String beanClass = definition.getBeanClassName();
+        return beanClass == null ? "other" : ClassUtils.getPackageName(beanClass);
+    }
+
+    private class TimingInstantiationStrategy extends CglibSubclassingInstantiationStrategy {
+
+        @Override
+        public Object instantiate(RootBeanDefinition beanDefinition, String beanName, BeanFactory owner) {
+            instantiating(beanName);
+            return super.instantiate(beanDefinition, beanName, owner);
+        }
+
+        @Override
+        public Object instantiate(RootBeanDefinition beanDefinition, String beanName, BeanFactory owner,
+                                  Constructor<?> constructor, Object[] args) {
+            instantiating(beanName);
+            return super.instantiate(beanDefinition, beanName, owner, constructor, args);
+        }
+
+        @Override
+        public Object instantiate(RootBeanDefinition beanDefinition, String beanName, BeanFactory owner,
+                                  Object factoryBean, Method factoryMethod, Object[] args) {
+            instantiating(beanName);
+            return super.instantiate(beanDefinition, beanName, owner, factoryBean, factoryMethod, args);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static final class Creation {
+
+        final String beanName;
+
+        final long start;
+
+        long total;
+
+        /**
+         * time spent creating the beans this one depends on, while creating this one
+         */
+        long dependencies;
+
+        Creation(String beanName, long start) {
+            this.beanName = beanName;
+            this.start = start;
+        }
+
+        long own() {
+            return total - dependencies;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.marcuschiu.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.marcuschiu.data.datasource.StatementInspector;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Opens a StatementInspector scope per request and records what ran in it into
+ * - http.requests.statements{pattern} - histogram of JDBC statements per request
+ * - http.requests.nplusone{pattern} - requests where one select repeated nPlusOneThreshold times
+ * the N+1 requests are also logged by the StatementInspector with the repeated select
+ * an async request keeps its scope across threads: parked in a request attribute while the request
+ * waits for its result (the DatabaseCallExecutor adds the database thread's statements to it)
+ * and continued by the dispatch that renders the result
+ */
+public class StatementInspectionInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String SCOPE_ATTRIBUTE = StatementInspectionInterceptor.class.getName() + ".scope";
+
+    private final StatementInspector inspector;
+
+    private final MetricRegistry metricRegistry;
+
+    public StatementInspectionInterceptor(StatementInspector inspector, MetricRegistry metricRegistry) {
+        this.inspector = inspector;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object scope = request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope instanceof StatementInspector.Scope) {
+            request.removeAttribute(SCOPE_ATTRIBUTE);
+            inspector.attach((StatementInspector.Scope) scope);
+        } else {
+            inspector.begin();
+        }
+        return true;
+    }
+
+    /**
+     * The handler went async, the container thread goes back to the pool without the scope
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        StatementInspector.Scope scope = inspector.attach(null);
+        if (scope != null) {
+            request.setAttribute(SCOPE_ATTRIBUTE, scope);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String mapping = pattern == null ? "UNMAPPED" : pattern.toString();
+
+        StatementInspector.Summary summary = inspector.end(request.getMethod() + " " + mapping);
+        if (summary == null) {
+            return;
+        }
+        metricRegistry.histogram(MetricNames.tagged("http.requests.statements", "pattern", mapping))
+                .update(summary.getStatements());
+        if (summary.isNPlusOne()) {
+            metricRegistry.counter(MetricNames.tagged("http.requests.nplusone", "pattern", mapping)).inc();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.marcuschiu.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delegating PlatformTransactionManager that times each transaction from begin to commit/rollback into
+ * transactions{readOnly="true|false",outcome="commit|rollback"}
+ * only transactions that actually start are timed, methods joining an outer transaction are not
+ * transactions on a thread complete in the reverse order they began (nested or suspended ones
+ * finish before the outer one), so their start times are kept on a per-thread stack
+ */
+public class TimedTransactionManager implements PlatformTransactionManager {
+
+    private static final ThreadLocal<Deque<Started>> STARTED = new ThreadLocal<Deque<Started>>() {
+        @Override
+        protected Deque<Started> initialValue() {
+            return new ArrayDeque<>();
+        }
+    };
+
+    private final PlatformTransactionManager delegate;
+
+    private final MetricRegistry metricRegistry;
+
+    public TimedTransactionManager(PlatformTransactionManager delegate, MetricRegistry metricRegistry) {
+        this.delegate = delegate;
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * @return PlatformTransactionManager - the wrapped transaction manager
+     */
+    public PlatformTransactionManager getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        long start = System.nanoTime();
+        TransactionStatus status = delegate.getTransaction(definition);
+        boolean readOnly = definition != null && definition.isReadOnly();
+        STARTED.get().push(new Started(status.isNewTransaction() ? start : -1, readOnly));
+        return status;
+    }
+
+    @Override
+    public void commit(TransactionStatus status) throws TransactionException {
+        Started started = STARTED.get().poll();
+        try {
+            delegate.commit(status);
+        } finally {
+            record(started, "commit");
+        }
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) throws TransactionException {
+        Started started = STARTED.get().poll();
+        try {
+            delegate.rollback(status);
+        } finally {
+            record(started, "rollback");
+        }
+    }
+
+    private void record(Started started, String outcome) {
+        if (started == null || started.start < 0) {
+            return;
+        }
+        metricRegistry.timer(MetricNames.tagged("transactions",
+                "readOnly", String.valueOf(started.readOnly),
+                "outcome", outcome))
+                .update(System.nanoTime() - started.start, TimeUnit.NANOSECONDS);
+    }
+
+    private static final class Started {
+        /**
+         * System.nanoTime() at begin, -1 when the call joined an existing transaction
+         */
+        final long start;
+
+        final boolean readOnly;
+
+        Started(long start, boolean readOnly) {
+            this.start = start;
+            this.readOnly = readOnly;
+        }
+    }
+}
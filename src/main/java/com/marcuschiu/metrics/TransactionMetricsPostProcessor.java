@@ -0,0 +1,36 @@
+package com.marcuschiu.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Wraps every PlatformTransactionManager bean in a TimedTransactionManager
+ * the MetricRegistry is only looked up when the first transaction manager is created,
+ * so this post processor does not pull it (and its configuration) in early
+ */
+public class TransactionMetricsPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+
+    private BeanFactory beanFactory;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof PlatformTransactionManager && !(bean instanceof TimedTransactionManager)) {
+            return new TimedTransactionManager((PlatformTransactionManager) bean, beanFactory.getBean(MetricRegistry.class));
+        }
+        return bean;
+    }
+}
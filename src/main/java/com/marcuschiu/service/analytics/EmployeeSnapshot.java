@@ -0,0 +1,327 @@
+package com.marcuschiu.service.analytics;
+
+import com.google.common.base.Charsets;
+import com.marcuschiu.data.model.entity.Employee;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only columnar copy of the employees in a memory-mapped file, for analytics that would otherwise
+ * hydrate every Employee (BigDecimal salary, Joda dates, phones)
+ * one primitive column per attribute, rows ordered by joining year, then by salary:
+ * - salary in cents (long)
+ * - id, joining date and birth date as days since 1970-01-01, name as a code into the names dictionary (int)
+ * - yearStarts: first row of every joining year from firstYear on, a year's rows are contiguous and
+ *   sorted by salary, so its percentiles are plain reads
+ * the columns are off-heap (page cache), the snapshot only keeps buffer views on them
+ * immutable and safe to read from many threads (absolute gets only)
+ * file layout, native byte order: header, salary column, int columns, yearStarts, names dictionary
+ * (offsets of the UTF-8 names, then their bytes); a file is limited to 2 GB (about 70 million rows)
+ */
+public final class EmployeeSnapshot {
+
+    private static final int MAGIC = 0x454d5053;
+
+    private static final int FORMAT_VERSION = 1;
+
+    // magic, version, byte order, rows, names, firstYear, years, name bytes (int) and takenAt (long)
+    private static final int HEADER_BYTES = 8 * 4 + 8;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final MappedByteBuffer buffer;
+
+    private final int rows;
+
+    private final int names;
+
+    private final int firstYear;
+
+    private final int years;
+
+    private final DateTime takenAt;
+
+    private final LongBuffer salaryCents;
+
+    private final IntBuffer ids;
+
+    private final IntBuffer joiningDays;
+
+    private final IntBuffer birthDays;
+
+    private final IntBuffer nameCodes;
+
+    private final IntBuffer yearStarts;
+
+    private final IntBuffer nameOffsets;
+
+    private final ByteBuffer nameBytes;
+
+    private EmployeeSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        buffer.order(ByteOrder.nativeOrder());
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION
+                || buffer.getInt(8) != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0)) {
+            throw new IOException("not an employee snapshot of this format and byte order");
+        }
+        rows = buffer.getInt(12);
+        names = buffer.getInt(16);
+        firstYear = buffer.getInt(20);
+        years = buffer.getInt(24);
+        int nameByteCount = buffer.getInt(28);
+        takenAt = new DateTime(buffer.getLong(32));
+
+        int offset = HEADER_BYTES;
+        salaryCents = slice(offset, rows * 8L).asLongBuffer();
+        offset += rows * 8;
+        ids = slice(offset, rows * 4L).asIntBuffer();
+        offset += rows * 4;
+        joiningDays = slice(offset, rows * 4L).asIntBuffer();
+        offset += rows * 4;
+        birthDays = slice(offset, rows * 4L).asIntBuffer();
+        offset += rows * 4;
+        nameCodes = slice(offset, rows * 4L).asIntBuffer();
+        offset += rows * 4;
+        yearStarts = slice(offset, (years + 1) * 4L).asIntBuffer();
+        offset += (years + 1) * 4;
+        nameOffsets = slice(offset, (names + 1) * 4L).asIntBuffer();
+        offset += (names + 1) * 4;
+        nameBytes = slice(offset, nameByteCount);
+    }
+
+    private ByteBuffer slice(int offset, long length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit((int) (offset + length));
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Maps a snapshot written by Builder.writeTo
+     * @param file
+     * @return EmployeeSnapshot
+     * @throws IOException - missing, unreadable or not a snapshot
+     */
+    public static EmployeeSnapshot open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            // the mapping stays valid after the channel is closed
+            return new EmployeeSnapshot(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        }
+    }
+
+    public int rows() { return rows; }
+
+    public int distinctNames() { return names; }
+
+    public DateTime takenAt() { return takenAt; }
+
+    public int firstYear() { return firstYear; }
+
+    public int years() { return years; }
+
+    public long sizeInBytes() { return buffer.capacity(); }
+
+    public long salaryCents(int row) { return salaryCents.get(row); }
+
+    public int id(int row) { return ids.get(row); }
+
+    public int joiningDay(int row) { return joiningDays.get(row); }
+
+    public int birthDay(int row) { return birthDays.get(row); }
+
+    /**
+     * @param yearIndex - 0 for firstYear
+     * @return int - first row of the joining year, yearStart(yearIndex + 1) is the row after its last one
+     */
+    public int yearStart(int yearIndex) { return yearStarts.get(yearIndex); }
+
+    /**
+     * @param row
+     * @return String - the employee's name, decoded from the dictionary
+     */
+    public String name(int row) {
+        int code = nameCodes.get(row);
+        int start = nameOffsets.get(code);
+        byte[] bytes = new byte[nameOffsets.get(code + 1) - start];
+        ByteBuffer view = nameBytes.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    /**
+     * Collects the rows of a snapshot in memory (primitive arrays) and writes the file
+     * not thread safe
+     */
+    public static final class Builder {
+
+        private int rows;
+
+        private long[] salaryCents = new long[1024];
+
+        private int[] ids = new int[1024];
+
+        private int[] joiningDays = new int[1024];
+
+        private int[] birthDays = new int[1024];
+
+        private int[] nameCodes = new int[1024];
+
+        private short[] joiningYears = new short[1024];
+
+        private final Map<String, Integer> nameCodeByName = new HashMap<>();
+
+        private final List<String> names = new ArrayList<>();
+
+        private int skipped;
+
+        /**
+         * @param employee - employees without salary or dates are skipped (counted in skipped())
+         */
+        public void add(Employee employee) {
+            if (employee.getSalary() == null || employee.getJoiningDate() == null || employee.getBirthDate() == null) {
+                skipped++;
+                return;
+            }
+            if (rows == ids.length) {
+                int capacity = rows * 2;
+                salaryCents = Arrays.copyOf(salaryCents, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                joiningDays = Arrays.copyOf(joiningDays, capacity);
+                birthDays = Arrays.copyOf(birthDays, capacity);
+                nameCodes = Arrays.copyOf(nameCodes, capacity);
+                joiningYears = Arrays.copyOf(joiningYears, capacity);
+            }
+            salaryCents[rows] = employee.getSalary().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+            ids[rows] = employee.getId();
+            joiningDays[rows] = epochDay(employee.getJoiningDate());
+            birthDays[rows] = epochDay(employee.getBirthDate());
+            joiningYears[rows] = (short) employee.getJoiningDate().getYear();
+
+            String name = employee.getName() == null ? "" : employee.getName();
+            Integer code = nameCodeByName.get(name);
+            if (code == null) {
+                code = names.size();
+                nameCodeByName.put(name, code);
+                names.add(name);
+            }
+            nameCodes[rows] = code;
+            rows++;
+        }
+
+        public int rows() { return rows; }
+
+        public int skipped() { return skipped; }
+
+        /**
+         * Writes the snapshot (rows sorted by joining year and salary) to the file, replacing it
+         * @param file
+         * @param takenAt - when the rows were read
+         * @throws IOException
+         */
+        public void writeTo(File file, DateTime takenAt) throws IOException {
+            Integer[] order = new Integer[rows];
+            for (int i = 0; i < rows; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int byYear = Integer.compare(joiningYears[a], joiningYears[b]);
+                    return byYear != 0 ? byYear : Long.compare(salaryCents[a], salaryCents[b]);
+                }
+            });
+
+            int firstYear = rows == 0 ? 0 : joiningYears[order[0]];
+            int years = rows == 0 ? 0 : joiningYears[order[rows - 1]] - firstYear + 1;
+            int[] yearStarts = new int[years + 1];
+            for (int year = 0, row = 0; year <= years; year++) {
+                while (row < rows && joiningYears[order[row]] - firstYear < year) {
+                    row++;
+                }
+                yearStarts[year] = row;
+            }
+
+            List<byte[]> encodedNames = new ArrayList<>(names.size());
+            int nameByteCount = 0;
+            for (String name : names) {
+                byte[] encoded = name.getBytes(Charsets.UTF_8);
+                encodedNames.add(encoded);
+                nameByteCount += encoded.length;
+            }
+
+            long size = HEADER_BYTES + rows * 8L + rows * 4L * 4 + (years + 1) * 4L + (names.size() + 1) * 4L + nameByteCount;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("snapshot of " + rows + " employees exceeds 2 GB");
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(size);
+                MappedByteBuffer out = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                out.order(ByteOrder.nativeOrder());
+                out.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0)
+                        .putInt(rows).putInt(names.size()).putInt(firstYear).putInt(years).putInt(nameByteCount)
+                        .putLong(takenAt.getMillis());
+                for (Integer row : order) {
+                    out.putLong(salaryCents[row]);
+                }
+                for (Integer row : order) {
+                    out.putInt(ids[row]);
+                }
+                for (Integer row : order) {
+                    out.putInt(joiningDays[row]);
+                }
+                for (Integer row : order) {
+                    out.putInt(birthDays[row]);
+                }
+                for (Integer row : order) {
+                    out.putInt(nameCodes[row]);
+                }
+                for (int start : yearStarts) {
+                    out.putInt(start);
+                }
+                int nameOffset = 0;
+                for (byte[] encoded : encodedNames) {
+                    out.putInt(nameOffset);
+                    nameOffset += encoded.length;
+                }
+                out.putInt(nameOffset);
+                for (byte[] encoded : encodedNames) {
+                    out.put(encoded);
+                }
+                out.force();
+            }
+        }
+
+        private static int epochDay(LocalDate date) {
+            // exact multiples of a day, negative before 1970
+            return (int) (date.toDateTimeAtStartOfDay(DateTimeZone.UTC).getMillis() / MILLIS_PER_DAY);
+        }
+    }
+
+    /**
+     * @param cents
+     * @return BigDecimal - the amount with 2 decimals
+     */
+    public static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,63 @@
+package com.marcuschiu.service.analytics;
+
+import java.math.BigDecimal;
+
+/**
+ * Headcount and salary figures of the employees who joined in one year
+ * percentiles are nearest-rank over the year's salaries
+ */
+public class SalaryByJoiningYear {
+
+    private final int year;
+
+    private final int headcount;
+
+    private final BigDecimal totalSalary;
+
+    private final BigDecimal averageSalary;
+
+    private final BigDecimal minimumSalary;
+
+    private final BigDecimal medianSalary;
+
+    private final BigDecimal p90Salary;
+
+    private final BigDecimal maximumSalary;
+
+    private final double averageAgeAtJoining;
+
+    public SalaryByJoiningYear(int year, int headcount, BigDecimal totalSalary, BigDecimal averageSalary,
+                               BigDecimal minimumSalary, BigDecimal medianSalary, BigDecimal p90Salary,
+                               BigDecimal maximumSalary, double averageAgeAtJoining) {
+        this.year = year;
+        this.headcount = headcount;
+        this.totalSalary = totalSalary;
+        this.averageSalary = averageSalary;
+        this.minimumSalary = minimumSalary;
+        this.medianSalary = medianSalary;
+        this.p90Salary = p90Salary;
+        this.maximumSalary = maximumSalary;
+        this.averageAgeAtJoining = averageAgeAtJoining;
+    }
+
+    public int getYear() { return year; }
+
+    public int getHeadcount() { return headcount; }
+
+    public BigDecimal getTotalSalary() { return totalSalary; }
+
+    public BigDecimal getAverageSalary() { return averageSalary; }
+
+    public BigDecimal getMinimumSalary() { return minimumSalary; }
+
+    public BigDecimal getMedianSalary() { return medianSalary; }
+
+    public BigDecimal getP90Salary() { return p90Salary; }
+
+    public BigDecimal getMaximumSalary() { return maximumSalary; }
+
+    /**
+     * @return double - in years, one decimal
+     */
+    public double getAverageAgeAtJoining() { return averageAgeAtJoining; }
+}
@@ -0,0 +1,42 @@
+package com.marcuschiu.service.analytics;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import org.joda.time.DateTime;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Salary figures by joining year, computed from an EmployeeSnapshot
+ * as of takenAt, writes since then are in the next snapshot
+ */
+public class SalaryReport {
+
+    private final DateTime takenAt;
+
+    private final int headcount;
+
+    private final BigDecimal totalSalary;
+
+    private final List<SalaryByJoiningYear> years;
+
+    public SalaryReport(DateTime takenAt, int headcount, BigDecimal totalSalary, List<SalaryByJoiningYear> years) {
+        this.takenAt = takenAt;
+        this.headcount = headcount;
+        this.totalSalary = totalSalary;
+        this.years = years;
+    }
+
+    @JsonSerialize(using = ToStringSerializer.class)
+    public DateTime getTakenAt() { return takenAt; }
+
+    public int getHeadcount() { return headcount; }
+
+    public BigDecimal getTotalSalary() { return totalSalary; }
+
+    /**
+     * @return years with at least one employee, ascending
+     */
+    public List<SalaryByJoiningYear> getYears() { return years; }
+}
@@ -0,0 +1,240 @@
+package com.marcuschiu.service.cache;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.marcuschiu.data.model.entity.Employee;
+import net.spy.memcached.AddrUtil;
+import net.spy.memcached.ConnectionFactoryBuilder;
+import net.spy.memcached.FailureMode;
+import net.spy.memcached.MemcachedClient;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache tier shared by all app nodes, backed by memcached (memcached.url)
+ * Employees are stored twice, under their id and under their ssn, in the compact
+ * EmployeeTranscoder format. The cache is best effort: a slow or unreachable
+ * memcached only turns reads into misses, it never fails a request.
+ * Writers must call invalidate(...), see EmployeeService: it replaces the entries by short-lived
+ * tombstones, and readers only add(...) what they loaded, so a read that loaded the row before the
+ * write committed (on any node) cannot put it back while the tombstone is there
+ * metrics "cache.employee.memcached.*": hits, misses, errors (timeouts and failed operations,
+ * each of them was served as a miss)
+ */
+@Component("cache.employee.memcached")
+public class EmployeeMemcachedCache implements MetricSet, InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(EmployeeMemcachedCache.class);
+
+    /**
+     * bump when EmployeeTranscoder's format changes so old entries are simply missed
+     */
+    private static final String KEY_PREFIX = "employee:v2:";
+
+    /**
+     * not in the EmployeeTranscoder format (other flags), so reading it is a miss
+     */
+    private static final byte[] TOMBSTONE = new byte[0];
+
+    private final EmployeeTranscoder transcoder = new EmployeeTranscoder();
+
+    private final Counter hits = new Counter();
+
+    private final Counter misses = new Counter();
+
+    private final Counter errors = new Counter();
+
+    @Value("${memcached.enabled:true}")
+    private boolean enabled;
+
+    @Value("${memcached.url:127.0.0.1:11211}")
+    private String url;
+
+    @Value("${memcached.employee.ttlSeconds:600}")
+    private int ttlSeconds;
+
+    // must outlast a read-through, from its miss to its add(...)
+    @Value("${memcached.employee.tombstoneSeconds:10}")
+    private int tombstoneSeconds;
+
+    @Value("${memcached.operationTimeoutMillis:50}")
+    private long operationTimeoutMillis;
+
+    private MemcachedClient client;
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        ConnectionFactoryBuilder builder = new ConnectionFactoryBuilder()
+                .setProtocol(ConnectionFactoryBuilder.Protocol.BINARY)
+                .setOpTimeout(operationTimeoutMillis)
+                // requests to a dead node fail right away instead of queueing until it comes back
+                .setFailureMode(FailureMode.Cancel)
+                .setDaemon(true);
+        client = new MemcachedClient(builder.build(), AddrUtil.getAddresses(url));
+    }
+
+    @Override
+    public void destroy() {
+        if (client != null) {
+            client.shutdown(1, TimeUnit.SECONDS);
+        }
+    }
+
+    public Employee getById(int id) {
+        return get(idKey(id));
+    }
+
+    public Employee getBySsn(String ssn) {
+        return get(ssnKey(ssn));
+    }
+
+    /**
+     * Stores the employee under both its id and its ssn (asynchronously), each only if the key is free:
+     * a key still held by a writer's tombstone is left alone
+     * @param employee - loaded after a miss
+     */
+    public void put(Employee employee) {
+        if (client == null || employee == null) {
+            return;
+        }
+        try {
+            client.add(idKey(employee.getId()), ttlSeconds, employee, transcoder);
+            client.add(ssnKey(employee.getSsn()), ttlSeconds, employee, transcoder);
+        } catch (RuntimeException e) {
+            errors.inc();
+            log.debug("memcached add failed", e);
+        }
+    }
+
+    /**
+     * Replaces the entries by tombstones now and, inside a transaction, again after it completes,
+     * so a node that re-read the old row before the commit cannot cache it for tombstoneSeconds
+     * @param id - may be null when unknown
+     * @param ssns - nulls are ignored
+     */
+    public void invalidate(Integer id, String... ssns) {
+        if (client == null) {
+            return;
+        }
+        final List<String> keys = new ArrayList<>();
+        if (id != null) {
+            keys.add(idKey(id));
+        }
+        for (String ssn : ssns) {
+            if (ssn != null) {
+                keys.add(ssnKey(ssn));
+            }
+        }
+
+        tombstone(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    tombstone(keys);
+                }
+            });
+        }
+    }
+
+    /**
+     * invalidate(id, ssn) for many employees, e.g. after a bulk delete
+     * @param ssnsById - id to ssn of each employee
+     */
+    public void invalidate(Map<Integer, String> ssnsById) {
+        if (client == null || ssnsById.isEmpty()) {
+            return;
+        }
+        final List<String> keys = new ArrayList<>(ssnsById.size() * 2);
+        for (Map.Entry<Integer, String> employee : ssnsById.entrySet()) {
+            keys.add(idKey(employee.getKey()));
+            if (employee.getValue() != null) {
+                keys.add(ssnKey(employee.getValue()));
+            }
+        }
+
+        tombstone(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    tombstone(keys);
+                }
+            });
+        }
+    }
+
+    public long hitCount() { return hits.getCount(); }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+        metrics.put("hits", hits);
+        metrics.put("misses", misses);
+        metrics.put("errors", errors);
+        return metrics;
+    }
+
+    private Employee get(String key) {
+        if (client == null) {
+            return null;
+        }
+        Future<Employee> future = null;
+        try {
+            future = client.asyncGet(key, transcoder);
+            Employee employee = future.get(operationTimeoutMillis, TimeUnit.MILLISECONDS);
+            (employee == null ? misses : hits).inc();
+            return employee;
+        } catch (Exception e) {
+            if (future != null) {
+                future.cancel(false);
+            }
+            errors.inc();
+            log.debug("memcached get failed for " + key, e);
+            return null;
+        }
+    }
+
+    private void tombstone(List<String> keys) {
+        for (String key : keys) {
+            try {
+                client.set(key, tombstoneSeconds, TOMBSTONE);
+            } catch (RuntimeException e) {
+                errors.inc();
+                log.debug("memcached set failed for " + key, e);
+            }
+        }
+    }
+
+    private static String idKey(int id) {
+        return KEY_PREFIX + "id:" + id;
+    }
+
+    /**
+     * memcached keys may not contain spaces or control characters, the ssn is
+     * user input so it is base64url encoded
+     */
+    private static String ssnKey(String ssn) {
+        return KEY_PREFIX + "ssn:" + BaseEncoding.base64Url().omitPadding().encode(ssn.getBytes(Charsets.UTF_8));
+    }
+}
@@ -0,0 +1,157 @@
+package com.marcuschiu.service.cache;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.metrics.CountGauge;
+import net.spy.memcached.CachedData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process near cache of employees keyed by SSN
+ * - size bounded (least recently used entries are evicted first) and expires entries after a while
+ * - misses are cached too (Optional.absent()), so checking a new SSN twice only queries once
+ * - employees are cached as their columns encoded by EmployeeTranscoder (an immutable snapshot, not the
+ *   session's instance), every get() decodes a copy of its own: phones are not part of it (getPhones() == null)
+ *   and a caller changing it changes nothing for other requests
+ * Writers must call invalidate(...) for every SSN they touch, see EmployeeService
+ * metrics "cache.employee.ssn.*": hits, misses, evictions (size/expiry), hitRatio,
+ * invalidations (by writers) and size
+ */
+@Component("cache.employee.ssn")
+public class EmployeeSsnCache implements MetricSet {
+
+    private final Cache<String, Optional<CachedData>> cache;
+
+    private final EmployeeTranscoder transcoder = new EmployeeTranscoder();
+
+    /**
+     * bumped on every invalidation, a load that raced with an invalidation is not cached
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter invalidations = new Counter();
+
+    @Autowired
+    public EmployeeSsnCache(@Value("${cache.employee.ssn.maximumSize:10000}") long maximumSize,
+                            @Value("${cache.employee.ssn.expireAfterWriteSeconds:300}") long expireAfterWriteSeconds) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param ssn
+     * @return cached lookup result, or null when the SSN is not cached
+     * (an absent Optional means "cached: no employee has this SSN")
+     */
+    public Optional<Employee> get(String ssn) {
+        Optional<CachedData> snapshot = cache.getIfPresent(ssn);
+        if (snapshot == null) {
+            return null;
+        }
+        return snapshot.isPresent() ? Optional.of(transcoder.decode(snapshot.get())) : Optional.<Employee>absent();
+    }
+
+    /**
+     * @return a stamp to pass to put(...), take it BEFORE loading from the database
+     */
+    public long stamp() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a lookup result unless some SSN was invalidated since stamp was taken,
+     * in which case the loaded value may already be stale
+     * @param ssn
+     * @param employee - loaded employee, or null if none has this SSN, it is copied (not kept)
+     * @param stamp - value of stamp() taken before loading
+     */
+    public void put(String ssn, Employee employee, long stamp) {
+        if (generation.get() == stamp) {
+            cache.put(ssn, employee == null ? Optional.<CachedData>absent() : Optional.of(transcoder.encode(employee)));
+        }
+    }
+
+    public void invalidate(String... ssns) {
+        invalidate(Arrays.asList(ssns));
+    }
+
+    /**
+     * Drops the given SSNs now and, when called inside a transaction, once more after it
+     * completes, so readers that loaded the old row before the commit cannot keep it cached
+     * @param ssns - nulls are ignored
+     */
+    public void invalidate(final Collection<String> ssns) {
+        evict(ssns);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(ssns);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.inc();
+        cache.invalidateAll();
+    }
+
+    private void evict(Collection<String> ssns) {
+        generation.incrementAndGet();
+        for (String ssn : ssns) {
+            if (ssn != null) {
+                invalidations.inc();
+                cache.invalidate(ssn);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+        metrics.put("hits", new CountGauge() {
+            @Override
+            public Long getValue() { return cache.stats().hitCount(); }
+        });
+        metrics.put("misses", new CountGauge() {
+            @Override
+            public Long getValue() { return cache.stats().missCount(); }
+        });
+        metrics.put("evictions", new CountGauge() {
+            @Override
+            public Long getValue() { return cache.stats().evictionCount(); }
+        });
+        metrics.put("hitRatio", new Gauge<Double>() {
+            @Override
+            public Double getValue() { return cache.stats().hitRate(); }
+        });
+        metrics.put("invalidations", invalidations);
+        metrics.put("size", new Gauge<Long>() {
+            @Override
+            public Long getValue() { return cache.size(); }
+        });
+        return metrics;
+    }
+}
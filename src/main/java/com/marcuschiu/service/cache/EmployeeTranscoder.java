@@ -0,0 +1,150 @@
+package com.marcuschiu.service.cache;
+
+import com.marcuschiu.data.model.embeddable.Name;
+import com.marcuschiu.data.model.entity.Employee;
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.Transcoder;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Compact binary encoding of an Employee for memcached
+ * Java serialization would write class descriptors, the Hibernate collection
+ * wrapper and Joda internals for every entry, this only writes the column values:
+ * - dates as a single yyyymmdd int
+ * - salary as unscaled long + scale
+ * - lastModified as epoch millis
+ * - strings as modified UTF-8, with a presence flag when nullable
+ * phones are not part of the encoding, decoded employees have getPhones() == null
+ */
+public class EmployeeTranscoder implements Transcoder<Employee> {
+
+    /**
+     * memcached flags marking our format, entries with other flags are ignored
+     */
+    static final int FLAGS = 0x454D0001;
+
+    // 2 - version and lastModified
+    private static final byte FORMAT_VERSION = 2;
+
+    @Override
+    public boolean asyncDecode(CachedData data) {
+        return false;
+    }
+
+    @Override
+    public CachedData encode(Employee employee) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(employee.getId());
+            writeString(out, employee.getName());
+            writeString(out, employee.getSsn());
+            writeString(out, employee.getText());
+            writeDate(out, employee.getJoiningDate());
+            writeDate(out, employee.getBirthDate());
+            writeDecimal(out, employee.getSalary());
+            out.writeInt(employee.getVersion());
+            out.writeLong(employee.getLastModified() == null ? 0 : employee.getLastModified().getMillis());
+
+            Name name = employee.getNameTwo();
+            out.writeBoolean(name != null);
+            if (name != null) {
+                writeString(out, name.getFirst());
+                writeString(out, name.getMiddle());
+                writeString(out, name.getLast());
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        return new CachedData(FLAGS, bytes.toByteArray(), getMaxSize());
+    }
+
+    @Override
+    public Employee decode(CachedData data) {
+        if (data.getFlags() != FLAGS) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data.getData()))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                return null;
+            }
+
+            Employee employee = new Employee();
+            employee.setId(in.readInt());
+            employee.setName(readString(in));
+            employee.setSsn(readString(in));
+            employee.setText(readString(in));
+            employee.setJoiningDate(readDate(in));
+            employee.setBirthDate(readDate(in));
+            employee.setSalary(readDecimal(in));
+            employee.setVersion(in.readInt());
+            long lastModified = in.readLong();
+            employee.setLastModified(lastModified == 0 ? null : new DateTime(lastModified));
+
+            if (in.readBoolean()) {
+                Name name = new Name();
+                name.setFirst(readString(in));
+                name.setMiddle(readString(in));
+                name.setLast(readString(in));
+                employee.setNameTwo(name);
+            }
+            return employee;
+        } catch (IOException e) {
+            // truncated or foreign entry, treat as a miss
+            return null;
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return CachedData.MAX_SIZE;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeInt(date == null ? 0 : date.getYear() * 10000 + date.getMonthOfYear() * 100 + date.getDayOfMonth());
+    }
+
+    private static LocalDate readDate(DataInputStream in) throws IOException {
+        int yyyymmdd = in.readInt();
+        return yyyymmdd == 0 ? null : new LocalDate(yyyymmdd / 10000, (yyyymmdd / 100) % 100, yyyymmdd % 100);
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            // @Digits(integer=8, fraction=2) always fits a long
+            out.writeLong(value.unscaledValue().longValue());
+            out.writeByte(value.scale());
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long unscaled = in.readLong();
+        return new BigDecimal(BigInteger.valueOf(unscaled), in.readByte());
+    }
+}
@@ -0,0 +1,34 @@
+package com.marcuschiu.service.event;
+
+import com.marcuschiu.data.model.bulk.EmployeeBulkUpdate;
+import com.marcuschiu.data.model.entity.Employee;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Told about the employee writes of EmployeeService once they are committed, see EmployeeChangePublisher
+ * for in-process structures derived from the employees (search index, ...) that must follow them
+ * called on the thread that committed, implementations must be quick and thread safe
+ */
+public interface EmployeeChangeListener {
+
+    /**
+     * Employees inserted or updated, with their ids
+     * @param employees - a null nameTwo means the name parts were not changed (EmployeeDao.updateIfVersion)
+     * @param previousSsns - id to the ssn an updated employee had before, empty for inserts
+     */
+    void saved(Collection<Employee> employees, Map<Integer, String> previousSsns);
+
+    /**
+     * The same change applied to many employees, their names and ssns did not change
+     * @param ssnsById - id to ssn of the employees updated
+     * @param update
+     */
+    void updated(Map<Integer, String> ssnsById, EmployeeBulkUpdate update);
+
+    /**
+     * @param ssnsById - id to ssn of the employees deleted
+     */
+    void deleted(Map<Integer, String> ssnsById);
+}
@@ -0,0 +1,110 @@
+package com.marcuschiu.service.event;
+
+import com.marcuschiu.data.model.bulk.EmployeeBulkUpdate;
+import com.marcuschiu.data.model.entity.Employee;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands EmployeeService's writes to every EmployeeChangeListener bean after the transaction commits,
+ * nothing is published for a rollback; outside a transaction right away
+ * a failing listener is logged and does not keep the others from being told (the write is committed anyway)
+ */
+@Component
+public class EmployeeChangePublisher {
+
+    private static final Log log = LogFactory.getLog(EmployeeChangePublisher.class);
+
+    private List<EmployeeChangeListener> listeners = Collections.emptyList();
+
+    @Autowired(required = false)
+    public void setListeners(List<EmployeeChangeListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * @return boolean - false when nobody listens, so callers can skip preparing a notification
+     */
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    public void saved(final Collection<Employee> employees, final Map<Integer, String> previousSsns) {
+        if (employees.isEmpty()) {
+            return;
+        }
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                for (EmployeeChangeListener listener : listeners) {
+                    try {
+                        listener.saved(employees, previousSsns);
+                    } catch (RuntimeException e) {
+                        log.error(listener.getClass().getSimpleName() + " failed on saved employees", e);
+                    }
+                }
+            }
+        });
+    }
+
+    public void updated(final Map<Integer, String> ssnsById, final EmployeeBulkUpdate update) {
+        if (ssnsById.isEmpty()) {
+            return;
+        }
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                for (EmployeeChangeListener listener : listeners) {
+                    try {
+                        listener.updated(ssnsById, update);
+                    } catch (RuntimeException e) {
+                        log.error(listener.getClass().getSimpleName() + " failed on updated employees", e);
+                    }
+                }
+            }
+        });
+    }
+
+    public void deleted(final Map<Integer, String> ssnsById) {
+        if (ssnsById.isEmpty()) {
+            return;
+        }
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                for (EmployeeChangeListener listener : listeners) {
+                    try {
+                        listener.deleted(ssnsById);
+                    } catch (RuntimeException e) {
+                        log.error(listener.getClass().getSimpleName() + " failed on deleted employees", e);
+                    }
+                }
+            }
+        });
+    }
+
+    private void afterCommit(final Runnable notification) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            notification.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                notification.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,226 @@
+package com.marcuschiu.service.implementation;
+
+import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.data.repository.v1.dao.EmployeeDao;
+import com.marcuschiu.data.repository.v1.dao.ScrollCallback;
+import com.marcuschiu.service.analytics.EmployeeSnapshot;
+import com.marcuschiu.service.analytics.SalaryByJoiningYear;
+import com.marcuschiu.service.analytics.SalaryReport;
+import com.marcuschiu.service.interfaces.IEmployeeAnalyticsService;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Salary and tenure analytics over an EmployeeSnapshot instead of hydrated employees
+ * - the snapshot is rebuilt every analytics.snapshot.refreshMillis (and right after startup) by streaming
+ *   the employees (EmployeeDao.scrollAll), written next to the current file and moved over it,
+ *   readers keep the mapping of the snapshot they started with
+ * - aggregates scan the mapped columns in parallel on a ForkJoinPool (analytics.parallelism threads),
+ *   split into ranges of SCAN_CHUNK rows
+ * Not @Transactional, scrollAll reads on its own stateless session
+ */
+@Service("employeeAnalyticsService")
+public class EmployeeAnalyticsService implements IEmployeeAnalyticsService, InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(EmployeeAnalyticsService.class);
+
+    // rows a scan task handles itself rather than splitting further
+    private static final int SCAN_CHUNK = 1 << 16;
+
+    private static final double DAYS_PER_YEAR = 365.2425;
+
+    @Autowired
+    private EmployeeDao employeeRepository;
+
+    @Value("${analytics.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.snapshot.file:${java.io.tmpdir}/employee-snapshot.bin}")
+    private String snapshotFile;
+
+    // 0 uses every processor
+    @Value("${analytics.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    private volatile EmployeeSnapshot snapshot;
+
+    @Override
+    public void afterPropertiesSet() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.snapshot.refreshMillis:600000}")
+    public void scheduledRefresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            refreshSnapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("refreshing the employee snapshot failed, keeping the previous one", e);
+        }
+    }
+
+    @Override
+    public void refreshSnapshot() throws IOException {
+        long start = System.nanoTime();
+        DateTime takenAt = DateTime.now();
+        final EmployeeSnapshot.Builder builder = new EmployeeSnapshot.Builder();
+        employeeRepository.scrollAll(new ScrollCallback<Employee>() {
+            @Override
+            public void process(Employee employee) {
+                builder.add(employee);
+            }
+        });
+
+        File target = new File(snapshotFile);
+        File written = new File(target.getPath() + ".tmp");
+        builder.writeTo(written, takenAt);
+        // a rename: the mapping of the current snapshot still sees the old file
+        Files.move(written.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshot = EmployeeSnapshot.open(target);
+
+        log.info("employee snapshot of " + builder.rows() + " employees (" + builder.skipped() + " skipped, "
+                + snapshot.sizeInBytes() + " bytes) taken in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    @Override
+    public SalaryReport salariesByJoiningYear() {
+        EmployeeSnapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        Sums sums = pool.invoke(new ScanTask(current, 0, current.rows()));
+
+        List<SalaryByJoiningYear> years = new ArrayList<>();
+        long totalCents = 0;
+        for (int year = 0; year < current.years(); year++) {
+            int first = current.yearStart(year);
+            int end = current.yearStart(year + 1);
+            int headcount = end - first;
+            if (headcount == 0) {
+                continue;
+            }
+            totalCents += sums.salaryCents[year];
+            years.add(new SalaryByJoiningYear(current.firstYear() + year, headcount,
+                    EmployeeSnapshot.toAmount(sums.salaryCents[year]),
+                    EmployeeSnapshot.toAmount(sums.salaryCents[year]).divide(BigDecimal.valueOf(headcount), 2, RoundingMode.HALF_UP),
+                    EmployeeSnapshot.toAmount(current.salaryCents(first)),
+                    EmployeeSnapshot.toAmount(current.salaryCents(percentileRow(first, headcount, 0.5))),
+                    EmployeeSnapshot.toAmount(current.salaryCents(percentileRow(first, headcount, 0.9))),
+                    EmployeeSnapshot.toAmount(current.salaryCents(end - 1)),
+                    Math.round(sums.ageDays[year] / (double) headcount / DAYS_PER_YEAR * 10) / 10.0));
+        }
+        return new SalaryReport(current.takenAt(), current.rows(), EmployeeSnapshot.toAmount(totalCents), years);
+    }
+
+    /**
+     * Nearest rank, the year's rows are sorted by salary
+     */
+    private static int percentileRow(int first, int headcount, double percentile) {
+        return first + Math.max(0, (int) Math.ceil(percentile * headcount) - 1);
+    }
+
+    /**
+     * Per joining year totals of a range of rows
+     */
+    private static final class Sums {
+
+        final long[] salaryCents;
+
+        final long[] ageDays;
+
+        Sums(int years) {
+            salaryCents = new long[years];
+            ageDays = new long[years];
+        }
+
+        Sums add(Sums other) {
+            for (int year = 0; year < salaryCents.length; year++) {
+                salaryCents[year] += other.salaryCents[year];
+                ageDays[year] += other.ageDays[year];
+            }
+            return this;
+        }
+    }
+
+    private static final class ScanTask extends RecursiveTask<Sums> {
+
+        private final EmployeeSnapshot snapshot;
+
+        private final int from;
+
+        private final int to;
+
+        ScanTask(EmployeeSnapshot snapshot, int from, int to) {
+            this.snapshot = snapshot;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Sums compute() {
+            if (to - from > SCAN_CHUNK) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(snapshot, from, middle);
+                left.fork();
+                Sums right = new ScanTask(snapshot, middle, to).compute();
+                return right.add(left.join());
+            }
+
+            Sums sums = new Sums(snapshot.years());
+            if (from == to) {
+                return sums;
+            }
+            // rows are grouped by year, find the year of the first row and move on at each boundary
+            int year = 0;
+            while (snapshot.yearStart(year + 1) <= from) {
+                year++;
+            }
+            int yearEnd = snapshot.yearStart(year + 1);
+            long salaryCents = 0;
+            long ageDays = 0;
+            for (int row = from; row < to; row++) {
+                while (row >= yearEnd) {
+                    sums.salaryCents[year] += salaryCents;
+                    sums.ageDays[year] += ageDays;
+                    salaryCents = 0;
+                    ageDays = 0;
+                    year++;
+                    yearEnd = snapshot.yearStart(year + 1);
+                }
+                salaryCents += snapshot.salaryCents(row);
+                ageDays += snapshot.joiningDay(row) - snapshot.birthDay(row);
+            }
+            sums.salaryCents[year] += salaryCents;
+            sums.ageDays[year] += ageDays;
+            return sums;
+        }
+    }
+}
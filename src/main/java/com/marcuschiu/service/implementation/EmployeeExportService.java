@@ -0,0 +1,42 @@
+package com.marcuschiu.service.implementation;
+
+import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.data.repository.v1.dao.EmployeeDao;
+import com.marcuschiu.data.repository.v1.dao.ScrollCallback;
+import com.marcuschiu.service.interfaces.IEmployeeExportService;
+import com.marcuschiu.service.transfer.EmployeeFormat;
+import com.marcuschiu.service.transfer.EmployeeRecordWriter;
+import com.marcuschiu.service.transfer.EmployeeRecords;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Bulk employee export
+ * rows stream from a forward-only database cursor straight into the output,
+ * so memory use stays the same whether there are a thousand or millions of employees
+ * Not @Transactional, EmployeeDao.scrollAll reads on its own stateless session
+ */
+@Service("employeeExportService")
+public class EmployeeExportService implements IEmployeeExportService {
+
+    @Autowired
+    private EmployeeDao employeeRepository;
+
+    @Override
+    public long exportEmployees(OutputStream out, EmployeeFormat format) throws IOException {
+        final long[] count = {0};
+        try (final EmployeeRecordWriter writer = EmployeeRecordWriter.open(out, format)) {
+            employeeRepository.scrollAll(new ScrollCallback<Employee>() {
+                @Override
+                public void process(Employee employee) throws IOException {
+                    writer.write(EmployeeRecords.toValues(employee));
+                    count[0]++;
+                }
+            });
+        }
+        return count[0];
+    }
+}
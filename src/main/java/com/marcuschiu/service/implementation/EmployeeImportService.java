@@ -0,0 +1,160 @@
+package com.marcuschiu.service.implementation;
+
+import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.service.interfaces.IEmployeeImportService;
+import com.marcuschiu.service.interfaces.IEmployeeService;
+import com.marcuschiu.service.transfer.EmployeeFormat;
+import com.marcuschiu.service.transfer.EmployeeRecordReader;
+import com.marcuschiu.service.transfer.EmployeeRecords;
+import com.marcuschiu.service.transfer.ImportReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+import org.springframework.validation.Validator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk employee import
+ * - records are parsed one line at a time, of the rows only the current chunk is kept in memory,
+ *   plus the ssns seen so far (one string per row of the file, for the uniqueness check below)
+ * - each row is checked with the same bean-validation constraints (and messages) as the registration form
+ * - ssn uniqueness is checked against the file itself as it streams, and against the database per chunk
+ * - every chunk of valid rows is inserted with JDBC batching in its own transaction
+ *   (IEmployeeService.saveEmployees), so a failing chunk does not undo the ones before it
+ * Not @Transactional itself on purpose, a 100k row file must not be one transaction
+ */
+@Service("employeeImportService")
+public class EmployeeImportService implements IEmployeeImportService {
+
+    @Autowired
+    private IEmployeeService employeeService;
+
+    // same validator Spring MVC uses for @Valid Employee in DefaultController
+    @Autowired
+    @Qualifier("mvcValidator")
+    private Validator validator;
+
+    @Autowired
+    private MessageSource messageSource;
+
+    @Value("${import.batchSize:1000}")
+    private int batchSize;
+
+    @Value("${import.maxReportedErrors:1000}")
+    private int maxReportedErrors;
+
+    @Override
+    public ImportReport importEmployees(InputStream in, EmployeeFormat format) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportReport report = new ImportReport(maxReportedErrors);
+
+        // ssns seen so far in this file, a later duplicate is rejected
+        Set<String> seenSsns = new HashSet<>();
+        List<Employee> chunk = new ArrayList<>(batchSize);
+        List<Integer> chunkLines = new ArrayList<>(batchSize);
+
+        try (EmployeeRecordReader reader = EmployeeRecordReader.open(in, format)) {
+            while (true) {
+                Map<String, String> record;
+                try {
+                    record = reader.next();
+                } catch (EmployeeRecordReader.MalformedRecordException e) {
+                    report.rowRead();
+                    report.reject(reader.getLineNumber(), e.getMessage());
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                report.rowRead();
+                int line = reader.getLineNumber();
+
+                Employee employee = toValidEmployee(record, line, report);
+                if (employee == null) {
+                    continue;
+                }
+                if (!seenSsns.add(employee.getSsn())) {
+                    report.reject(line, "ssn: " + employee.getSsn() + " appears more than once in this file");
+                    continue;
+                }
+
+                chunk.add(employee);
+                chunkLines.add(line);
+                if (chunk.size() >= batchSize) {
+                    flush(chunk, chunkLines, report);
+                }
+            }
+        }
+        flush(chunk, chunkLines, report);
+
+        report.setElapsedMillis(System.currentTimeMillis() - start);
+        return report;
+    }
+
+    /**
+     * @return the employee, or null when the row was rejected
+     */
+    private Employee toValidEmployee(Map<String, String> record, int line, ImportReport report) {
+        List<String> problems = new ArrayList<>();
+        Employee employee = EmployeeRecords.toEmployee(record, problems);
+
+        BeanPropertyBindingResult errors = new BeanPropertyBindingResult(employee, "employee");
+        validator.validate(employee, errors);
+        for (ObjectError error : errors.getAllErrors()) {
+            String message = messageSource.getMessage(error, Locale.getDefault());
+            problems.add(error instanceof FieldError ? ((FieldError) error).getField() + ": " + message : message);
+        }
+
+        if (problems.isEmpty()) {
+            return employee;
+        }
+        StringBuilder message = new StringBuilder();
+        for (String problem : problems) {
+            if (message.length() > 0) {
+                message.append("; ");
+            }
+            message.append(problem);
+        }
+        report.reject(line, message.toString());
+        return null;
+    }
+
+    private void flush(List<Employee> chunk, List<Integer> chunkLines, ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            Set<String> existing = employeeService.saveEmployees(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                String ssn = chunk.get(i).getSsn();
+                if (existing.contains(ssn)) {
+                    report.reject(chunkLines.get(i), "ssn: " + messageSource.getMessage(
+                            "non.unique.ssn", new String[]{ssn}, Locale.getDefault()));
+                }
+            }
+            report.rowsImported(chunk.size() - existing.size());
+        } catch (DataAccessException | TransactionException e) {
+            // the chunk's transaction was rolled back, none of its rows made it
+            for (Integer line : chunkLines) {
+                report.reject(line, "not imported, batch failed: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+}
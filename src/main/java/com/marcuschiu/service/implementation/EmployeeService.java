@@ -1,81 +1,496 @@
 package com.marcuschiu.service.implementation;
 
-import com.google.common.collect.Lists;
+import com.google.common.base.Optional;
+import com.marcuschiu.data.model.bulk.EmployeeBulkUpdate;
 import com.marcuschiu.data.model.entity.Employee;
-import com.marcuschiu.data.repository.jpa.EmployeeRepository;
+import com.marcuschiu.data.model.page.KeysetPage;
+import com.marcuschiu.data.model.projection.EmployeeSummary;
+import com.marcuschiu.data.model.projection.EmployeeVersion;
+import com.marcuschiu.data.model.summary.SalaryTotalsChange;
 import com.marcuschiu.data.repository.v1.dao.EmployeeDao;
+import com.marcuschiu.data.repository.v1.dao.SalaryTotalsDao;
+import com.marcuschiu.service.cache.EmployeeMemcachedCache;
+import com.marcuschiu.service.cache.EmployeeSsnCache;
+import com.marcuschiu.service.event.EmployeeChangePublisher;
 import com.marcuschiu.service.interfaces.IEmployeeService;
+import com.marcuschiu.service.outbox.EmployeeOutbox;
+import com.marcuschiu.service.search.EmployeeAutocompleteIndex;
+import com.marcuschiu.service.search.EmployeeSearchHit;
+import com.marcuschiu.service.search.EmployeeSearchIndex;
+import com.marcuschiu.service.search.EmployeeSuggestion;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by marcus.chiu on 10/17/16.
  * @Service - indicates this class as a interfaces stereotype
  * @Transactional - starts a transaction on each method start and
  * commits it on each method exit (or rollback if method failed)
+ * @Transactional(readOnly = true) - finders, their connections are routed to the replica
+ * (see PersistenceConfig.routingDataSource) and their sessions skip dirty checking and flushing
+ * the read-throughs of the caches (findById, findEmployeeBySsn) are not read-only: what they load is kept
+ * for the caches' TTL, a row from a lagging replica could be the one just overwritten
+ * every write is announced to the EmployeeChangeListeners (search index, ...) once committed
+ * every write also changes the summary table SALARY_BY_JOINING_YEAR (SalaryTotalsDao) in the same transaction,
+ * the employees' previous joining dates and salaries are read with a lock first
+ * and appends a change event per employee to the outbox (EmployeeOutbox), also in the same transaction
  */
 @Service("employeeService")
 @Transactional
 public class EmployeeService implements IEmployeeService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static final int DEFAULT_SUGGESTIONS = 10;
+
+    public static final int MAX_SUGGESTIONS = 25;
+
     // EmployeeDaoImpl bean is used
-    // TODO EmployeeRepository class does not work yet
     @Autowired
     private EmployeeDao employeeRepository;
 
+    @Autowired
+    private SalaryTotalsDao salaryTotals;
+
+    @Autowired
+    private EmployeeSsnCache ssnCache;
+
+    @Autowired
+    private EmployeeMemcachedCache sharedCache;
+
+    @Autowired
+    private EmployeeChangePublisher changes;
+
+    @Autowired
+    private EmployeeOutbox outbox;
+
+    @Autowired
+    private EmployeeSearchIndex searchIndex;
+
+    @Autowired
+    private EmployeeAutocompleteIndex autocompleteIndex;
+
+    /**
+     * Read through the shared (memcached) cache, the returned employee may be
+     * detached and then has no phones (getPhones() == null)
+     * a miss is loaded from the primary (not read-only) and added to the shared cache, unless a write left a tombstone
+     * @param id
+     * @return Employee or null
+     */
     @Override
     public Employee findById(int id) {
-        return employeeRepository.findOne(id);
+        Employee employee = sharedCache.getById(id);
+        if (employee != null) {
+            return employee;
+        }
+
+        employee = employeeRepository.findOne(id);
+        sharedCache.put(employee);
+        return employee;
     }
 
     @Override
     public void saveEmployee(Employee employee) {
         employeeRepository.save(employee);
+        salaryTotals.apply(new SalaryTotalsChange().add(employee.getJoiningDate(), employee.getSalary()));
+        outbox.created(Collections.singletonList(employee.getId()));
+        // drops a cached "no employee has this ssn"
+        evictCaches(null, employee.getSsn());
+        changes.saved(Collections.singletonList(employee), Collections.<Integer, String>emptyMap());
     }
 
     /**
-     * Since the method is running with Transaction, No need to call hibernate update explicitly.
-     * Just fetch the entity from db and update it with proper values within transaction.
-     * It will be updated in db once transaction ends.
-     * @param employee
+     * The existence check and the inserts run in the same transaction, a concurrent
+     * insert of one of these ssns still fails the batch on the unique index
      */
     @Override
-    public void updateEmployee(Employee employee) {
-        System.out.println("EmployeeService.updateEmployee");
-        Employee entity = employeeRepository.findOne(employee.getId());
-        //Name embeddedName = entity.getNameTwo();
+    public Set<String> saveEmployees(List<Employee> employees) {
+        List<String> ssns = new ArrayList<>(employees.size());
+        for (Employee employee : employees) {
+            ssns.add(employee.getSsn());
+        }
+        Set<String> existing = employeeRepository.findExistingSsns(ssns);
 
-        if(entity != null) {
-            entity.setName(employee.getName());
-            entity.setJoiningDate(employee.getJoiningDate());
-            entity.setSalary(employee.getSalary());
-            entity.setSsn(employee.getSsn());
-            entity.setText(employee.getText());
-            entity.setBirthDate(employee.getBirthDate());
+        List<Employee> fresh = new ArrayList<>(employees.size());
+        List<String> freshSsns = new ArrayList<>(employees.size());
+        for (Employee employee : employees) {
+            if (!existing.contains(employee.getSsn())) {
+                fresh.add(employee);
+                freshSsns.add(employee.getSsn());
+            }
+        }
+        employeeRepository.batchInsert(fresh);
+        SalaryTotalsChange added = new SalaryTotalsChange();
+        for (Employee employee : fresh) {
+            added.add(employee.getJoiningDate(), employee.getSalary());
+        }
+        salaryTotals.apply(added);
+
+        // new employees are never in the shared cache, only cached "no employee has this ssn" go stale
+        ssnCache.invalidate(freshSsns);
+
+        if ((changes.hasListeners() || outbox.isEnabled()) && !fresh.isEmpty()) {
+            // the batch insert does not return the generated ids
+            Map<Integer, String> inserted = employeeRepository.findIdsBySsns(freshSsns);
+            outbox.created(inserted.keySet());
+            Map<String, Integer> ids = new HashMap<>();
+            for (Map.Entry<Integer, String> employee : inserted.entrySet()) {
+                ids.put(employee.getValue(), employee.getKey());
+            }
+            for (Employee employee : fresh) {
+                employee.setId(ids.get(employee.getSsn()));
+            }
+            changes.saved(fresh, Collections.<Integer, String>emptyMap());
+        }
+        return existing;
+    }
+
+    /**
+     * One UPDATE guarded by the version the form was loaded with, instead of loading the
+     * entity (a select, plus its phones) and letting the flush write it back
+     * @param employee
+     * @param previousSsn
+     */
+    @Override
+    public void updateEmployee(Employee employee, String previousSsn) {
+        SalaryTotalsChange previous = salaryTotals.lockShares(Collections.singletonList(employee.getId()));
+        if (!employeeRepository.updateIfVersion(employee)) {
+            throw new OptimisticLockingFailureException("employee " + employee.getId()
+                    + " was changed or deleted since version " + employee.getVersion());
         }
+        salaryTotals.apply(new SalaryTotalsChange().add(employee.getJoiningDate(), employee.getSalary()).subtractAll(previous));
+        outbox.updated(Collections.singletonList(employee.getId()));
+        // both the old and the new ssn lookups change
+        evictCaches(employee.getId(), previousSsn, employee.getSsn());
+        changes.saved(Collections.singletonList(employee), Collections.singletonMap(employee.getId(), previousSsn));
     }
 
     @Override
     public void deleteEmployeeBySsn(String ssn) {
-        employeeRepository.deleteEmployeeBySsn(ssn);
+        deleteEmployeesBySsn(Collections.singletonList(ssn));
+    }
+
+    /**
+     * The ids are resolved first, the shared cache also holds the employees under their ids
+     * and the statements are by primary key
+     */
+    @Override
+    public int deleteEmployeesBySsn(Collection<String> ssns) {
+        return delete(employeeRepository.findIdsBySsns(ssns));
+    }
+
+    /**
+     * The ssns are resolved first, the caches also hold the employees under their ssns
+     */
+    @Override
+    public int deleteEmployeesById(Collection<Integer> ids) {
+        return delete(employeeRepository.findSsnsByIds(ids));
+    }
+
+    @Override
+    public int updateEmployeesBySsn(Collection<String> ssns, EmployeeBulkUpdate update) {
+        return update(employeeRepository.findIdsBySsns(ssns), update);
+    }
+
+    @Override
+    public int updateEmployeesById(Collection<Integer> ids, EmployeeBulkUpdate update) {
+        return update(employeeRepository.findSsnsByIds(ids), update);
     }
 
+    private int delete(Map<Integer, String> ssnsById) {
+        if (ssnsById.isEmpty()) {
+            return 0;
+        }
+        SalaryTotalsChange previous = salaryTotals.lockShares(ssnsById.keySet());
+        int deleted = employeeRepository.deleteByIds(ssnsById.keySet());
+        salaryTotals.apply(new SalaryTotalsChange().subtractAll(previous));
+        outbox.deleted(ssnsById);
+        evictCaches(ssnsById);
+        changes.deleted(ssnsById);
+        return deleted;
+    }
+
+    private int update(Map<Integer, String> ssnsById, EmployeeBulkUpdate update) {
+        if (ssnsById.isEmpty() || update.isEmpty()) {
+            return 0;
+        }
+        if (update.getSalary() != null && update.getSalaryFactor() != null) {
+            throw new IllegalArgumentException("salary and salaryFactor exclude each other");
+        }
+        // a text-only update leaves the totals alone
+        boolean changesTotals = update.getSalary() != null || update.getSalaryFactor() != null || update.getJoiningDate() != null;
+        SalaryTotalsChange previous = changesTotals ? salaryTotals.lockShares(ssnsById.keySet()) : null;
+        int updated = employeeRepository.updateByIds(ssnsById.keySet(), update);
+        if (changesTotals) {
+            // salary * factor is computed by the database, the new shares are read back
+            salaryTotals.apply(salaryTotals.lockShares(ssnsById.keySet()).subtractAll(previous));
+        }
+        outbox.updated(ssnsById.keySet());
+        evictCaches(ssnsById);
+        changes.updated(ssnsById, update);
+        return updated;
+    }
+
+    /**
+     * phones are lazy, they are loaded here (batched) since the caller
+     * uses the employees after the transaction has ended
+     * @return List
+     */
     @Override
+    @Transactional(readOnly = true)
     public List<Employee> findAllEmployees() {
-        return  Lists.newArrayList(employeeRepository.findAll());
+        List<Employee> employees = employeeRepository.findAll();
+        employeeRepository.initializePhones(employees);
+        return employees;
     }
 
+    /**
+     * See page(), phones are loaded (batched) for the whole page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<Employee> findEmployeePage(Integer afterId, Integer beforeId, Integer size) {
+        KeysetPage<Employee> page = page(afterId, beforeId, size, true, new PageQuery<Employee>() {
+            @Override
+            List<Employee> after(int afterId, int limit) { return employeeRepository.findPageAfterId(afterId, limit); }
+
+            @Override
+            List<Employee> before(int beforeId, int limit) { return employeeRepository.findPageBeforeId(beforeId, limit); }
+
+            @Override
+            int id(Employee employee) { return employee.getId(); }
+        });
+
+        // allemployees.jsp shows each employee's first phone
+        employeeRepository.initializePhones(page.getContent());
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<EmployeeVersion> findEmployeePageVersions(Integer afterId, Integer beforeId, Integer size) {
+        // only compared, the estimate would be one more query for nothing
+        return page(afterId, beforeId, size, false, new PageQuery<EmployeeVersion>() {
+            @Override
+            List<EmployeeVersion> after(int afterId, int limit) { return employeeRepository.findVersionsPageAfterId(afterId, limit); }
+
+            @Override
+            List<EmployeeVersion> before(int beforeId, int limit) { return employeeRepository.findVersionsPageBeforeId(beforeId, limit); }
+
+            @Override
+            int id(EmployeeVersion version) { return version.getId(); }
+        });
+    }
+
+    /**
+     * Not read-only, like findEmployeeBySsn which loads the form: right after an edit a lagging replica would
+     * still return the old version, and a browser holding the old form would get a 304 and a stale.employee
+     * on its next save
+     */
+    @Override
+    public EmployeeVersion findVersionBySsn(String ssn) {
+        return employeeRepository.findVersionBySsn(ssn);
+    }
+
+    /**
+     * Fetches one row more than the page size to find out whether another page
+     * exists in the direction we are paging, without a COUNT(*)
+     * a cursor past either end (its rows were deleted, or the link is stale) would give an empty page
+     * without links, the first or the last page is returned instead
+     * @param afterId
+     * @param beforeId - takes precedence over afterId
+     * @param size
+     * @param estimateTotal - false leaves the page's estimated total null
+     * @param query - the rows of the page
+     * @param <T>
+     * @return KeysetPage
+     */
+    private <T> KeysetPage<T> page(Integer afterId, Integer beforeId, Integer size, boolean estimateTotal, PageQuery<T> query) {
+        int pageSize = (size == null) ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        List<T> rows;
+        boolean hasNext;
+        boolean hasPrevious;
+        if (beforeId != null) {
+            rows = query.before(beforeId, pageSize + 1);
+            if (rows.isEmpty()) {
+                // nothing in front of the cursor, the first page
+                return page(null, null, size, estimateTotal, query);
+            }
+            hasPrevious = rows.size() > pageSize;
+            if (hasPrevious) {
+                rows = rows.subList(0, pageSize);
+            }
+            // rows come back closest-to-cursor first
+            Collections.reverse(rows);
+            hasNext = true;
+        } else {
+            rows = query.after(afterId == null ? 0 : afterId, pageSize + 1);
+            hasNext = rows.size() > pageSize;
+            if (hasNext) {
+                rows = rows.subList(0, pageSize);
+            }
+            hasPrevious = afterId != null && afterId > 0;
+            if (rows.isEmpty() && hasPrevious) {
+                // nothing behind the cursor, the last page
+                rows = query.before(Integer.MAX_VALUE, pageSize + 1);
+                hasPrevious = rows.size() > pageSize;
+                if (hasPrevious) {
+                    rows = rows.subList(0, pageSize);
+                }
+                Collections.reverse(rows);
+            }
+        }
+
+        Integer nextCursor = null;
+        Integer previousCursor = null;
+        if (!rows.isEmpty()) {
+            nextCursor = hasNext ? query.id(rows.get(rows.size() - 1)) : null;
+            previousCursor = hasPrevious ? query.id(rows.get(0)) : null;
+        }
+
+        return new KeysetPage<>(rows, pageSize, nextCursor, previousCursor,
+                estimateTotal ? employeeRepository.estimateCount() : null);
+    }
+
+    /**
+     * The two keyset queries of a listing
+     * @param <T> - type of the rows
+     */
+    private abstract static class PageQuery<T> {
+
+        /**
+         * @return rows with an id greater than afterId, ascending
+         */
+        abstract List<T> after(int afterId, int limit);
+
+        /**
+         * @return rows with an id less than beforeId, DESCENDING
+         */
+        abstract List<T> before(int beforeId, int limit);
+
+        abstract int id(T row);
+    }
+
+    /**
+     * Read through the ssn near cache, then the shared (memcached) cache
+     * the returned employee may be a copy from a cache, it then has no phones (getPhones() == null)
+     * a miss is loaded from the primary (not read-only) and added to both caches, unless a write invalidated it meanwhile
+     * @param ssn
+     * @return Employee or null
+     */
     @Override
     public Employee findEmployeeBySsn(String ssn) {
-        return employeeRepository.findOneBySsn(ssn);
+        Optional<Employee> cached = ssnCache.get(ssn);
+        if (cached != null) {
+            return cached.orNull();
+        }
+
+        long stamp = ssnCache.stamp();
+        Employee employee = sharedCache.getBySsn(ssn);
+        if (employee == null) {
+            employee = employeeRepository.findOneBySsn(ssn);
+            sharedCache.put(employee);
+        }
+        ssnCache.put(ssn, employee, stamp);
+        return employee;
     }
 
+    /**
+     * Goes through the ssn near cache, so validating the same ssn again
+     * (e.g. edit GET followed by the edit POST) does not hit the database
+     * deliberately not read-only: on a miss the check reads the primary, a lagging
+     * replica could still miss an ssn that was just registered
+     */
     @Override
     public boolean isEmployeeSsnUnique(Integer id, String ssn) {
         Employee employee = findEmployeeBySsn(ssn);
         return (employee == null || ((id != null) && (employee.getId() == id)));
     }
+
+    /**
+     * Summaries are projections straight from the database, the caches hold entities
+     * a lookup by primary key is a single index read
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public EmployeeSummary findSummaryById(int id) {
+        return employeeRepository.findSummaryById(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EmployeeSummary findSummaryBySsn(String ssn) {
+        return employeeRepository.findSummaryBySsn(ssn);
+    }
+
+    /**
+     * Same paging as findEmployeePage, without entities and without phones
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<EmployeeSummary> findSummaryPage(Integer afterId, Integer beforeId, Integer size) {
+        return page(afterId, beforeId, size, true, new PageQuery<EmployeeSummary>() {
+            @Override
+            List<EmployeeSummary> after(int afterId, int limit) { return employeeRepository.findSummaryPageAfterId(afterId, limit); }
+
+            @Override
+            List<EmployeeSummary> before(int beforeId, int limit) { return employeeRepository.findSummaryPageBeforeId(beforeId, limit); }
+
+            @Override
+            int id(EmployeeSummary summary) { return summary.getId(); }
+        });
+    }
+
+    /**
+     * Answered by the in-process EmployeeSearchIndex, no transaction and no database access
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<EmployeeSearchHit> searchEmployees(String query, Integer size) {
+        int limit = (size == null) ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return searchIndex.search(query, limit);
+    }
+
+    /**
+     * Answered by the in-process EmployeeAutocompleteIndex, no transaction and no database access
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<EmployeeSuggestion> suggestEmployees(String prefix, Integer size) {
+        int limit = (size == null) ? DEFAULT_SUGGESTIONS : Math.max(1, Math.min(size, MAX_SUGGESTIONS));
+        return autocompleteIndex.suggest(prefix, limit);
+    }
+
+    /**
+     * Drops the given employee from the near and the shared cache tiers
+     * @param id - null when not known (or not assigned yet)
+     * @param ssns
+     */
+    private void evictCaches(Integer id, String... ssns) {
+        ssnCache.invalidate(ssns);
+        sharedCache.invalidate(id, ssns);
+    }
+
+    /**
+     * evictCaches for many employees
+     * @param ssnsById - id to ssn
+     */
+    private void evictCaches(Map<Integer, String> ssnsById) {
+        ssnCache.invalidate(ssnsById.values());
+        sharedCache.invalidate(ssnsById);
+    }
 }
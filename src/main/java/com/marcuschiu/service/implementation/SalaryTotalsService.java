@@ -0,0 +1,40 @@
+package com.marcuschiu.service.implementation;
+
+import com.marcuschiu.data.model.entity.SalaryTotals;
+import com.marcuschiu.data.repository.v1.dao.SalaryTotalsDao;
+import com.marcuschiu.service.interfaces.ISalaryTotalsService;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Reads of the summary table SALARY_BY_JOINING_YEAR, EmployeeService keeps it up to date
+ * the rebuild holds the summary's rows until it commits, EmployeeService's writes wait for it
+ */
+@Service("salaryTotalsService")
+@Transactional
+public class SalaryTotalsService implements ISalaryTotalsService {
+
+    private static final Log log = LogFactory.getLog(SalaryTotalsService.class);
+
+    @Autowired
+    private SalaryTotalsDao salaryTotals;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SalaryTotals> findSalaryTotalsByJoiningYear() {
+        return salaryTotals.findAll();
+    }
+
+    @Override
+    public List<SalaryTotals> rebuildSalaryTotals() {
+        long start = System.nanoTime();
+        int years = salaryTotals.rebuild();
+        log.info("salary totals of " + years + " joining years rebuilt in " + (System.nanoTime() - start) / 1000000 + " ms");
+        return salaryTotals.findAll();
+    }
+}
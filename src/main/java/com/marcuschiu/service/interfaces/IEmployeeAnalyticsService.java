@@ -0,0 +1,20 @@
+package com.marcuschiu.service.interfaces;
+
+import com.marcuschiu.service.analytics.SalaryReport;
+
+import java.io.IOException;
+
+public interface IEmployeeAnalyticsService {
+
+    /**
+     * Replaces the employee snapshot with a fresh one read from the database
+     * @throws IOException - the snapshot file could not be written or mapped, the previous snapshot stays
+     */
+    void refreshSnapshot() throws IOException;
+
+    /**
+     * Headcount and salaries by joining year, from the current snapshot (no database access)
+     * @return SalaryReport, or null when there is no snapshot yet
+     */
+    SalaryReport salariesByJoiningYear();
+}
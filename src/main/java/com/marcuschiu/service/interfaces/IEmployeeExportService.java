@@ -0,0 +1,18 @@
+package com.marcuschiu.service.interfaces;
+
+import com.marcuschiu.service.transfer.EmployeeFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface IEmployeeExportService {
+
+    /**
+     * Writes every employee to the given stream, ordered by id
+     * @param out - written to and closed
+     * @param format
+     * @return number of employees written
+     * @throws IOException - writing to the stream failed
+     */
+    long exportEmployees(OutputStream out, EmployeeFormat format) throws IOException;
+}
@@ -0,0 +1,19 @@
+package com.marcuschiu.service.interfaces;
+
+import com.marcuschiu.service.transfer.EmployeeFormat;
+import com.marcuschiu.service.transfer.ImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface IEmployeeImportService {
+
+    /**
+     * Streams employees out of the given file, validates them and inserts the valid ones
+     * @param in - CSV or NDJSON content, read once and not closed
+     * @param format
+     * @return ImportReport - counts and per-row errors
+     * @throws IOException - reading the stream failed
+     */
+    ImportReport importEmployees(InputStream in, EmployeeFormat format) throws IOException;
+}
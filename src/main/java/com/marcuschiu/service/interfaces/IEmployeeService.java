@@ -1,8 +1,16 @@
 package com.marcuschiu.service.interfaces;
 
+import com.marcuschiu.data.model.bulk.EmployeeBulkUpdate;
 import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.data.model.page.KeysetPage;
+import com.marcuschiu.data.model.projection.EmployeeSummary;
+import com.marcuschiu.data.model.projection.EmployeeVersion;
+import com.marcuschiu.service.search.EmployeeSearchHit;
+import com.marcuschiu.service.search.EmployeeSuggestion;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by marcus.chiu on 10/17/16.
@@ -12,13 +20,127 @@ public interface IEmployeeService {
 
     void saveEmployee(Employee employee);
 
-    void updateEmployee(Employee employee);
+    /**
+     * Bulk insert (JDBC batched) of already validated employees in one transaction
+     * employees whose ssn already exists are skipped, the inserted ones get their generated ids set
+     * @param employees
+     * @return ssns that were skipped because an employee already has them
+     */
+    Set<String> saveEmployees(List<Employee> employees);
 
+    /**
+     * Writes the edited fields of an employee in one statement, without loading it first
+     * @param employee - as bound from the edit form, with the id and version it was loaded with
+     * @param previousSsn - the ssn the employee had when it was loaded, its cache entries are dropped
+     * @throws org.springframework.dao.OptimisticLockingFailureException - the employee was changed
+     * or deleted since that version
+     */
+    void updateEmployee(Employee employee, String previousSsn);
+
+    /**
+     * Deletes the employee and its phones
+     * @param ssn
+     */
     void deleteEmployeeBySsn(String ssn);
 
+    /**
+     * Deletes the employees and their phones in one transaction, chunked set-based statements
+     * @param ssns - unknown ssns are ignored
+     * @return number of employees deleted
+     */
+    int deleteEmployeesBySsn(Collection<String> ssns);
+
+    /**
+     * See deleteEmployeesBySsn
+     * @param ids - unknown ids are ignored
+     * @return number of employees deleted
+     */
+    int deleteEmployeesById(Collection<Integer> ids);
+
+    /**
+     * Applies the same change to the employees in one transaction, chunked set-based statements
+     * @param ssns - unknown ssns are ignored
+     * @param update
+     * @return number of employees updated
+     */
+    int updateEmployeesBySsn(Collection<String> ssns, EmployeeBulkUpdate update);
+
+    /**
+     * See updateEmployeesBySsn
+     * @param ids - unknown ids are ignored
+     * @param update
+     * @return number of employees updated
+     */
+    int updateEmployeesById(Collection<Integer> ids, EmployeeBulkUpdate update);
+
     List<Employee> findAllEmployees();
 
+    /**
+     * Keyset paginated listing, ordered by id
+     * a cursor past the last row gives the last page, one in front of the first row the first page
+     * @param afterId - cursor of the previous page's last row, null for the first page
+     * @param beforeId - cursor of the next page's first row when paging backwards, takes precedence over afterId
+     * @param size - requested page size, clamped to a sane range
+     * @return KeysetPage
+     */
+    KeysetPage<Employee> findEmployeePage(Integer afterId, Integer beforeId, Integer size);
+
+    /**
+     * The page findEmployeePage would return with the same arguments, versions instead of employees
+     * and without the estimated total (null)
+     * @param afterId
+     * @param beforeId
+     * @param size
+     * @return KeysetPage
+     */
+    KeysetPage<EmployeeVersion> findEmployeePageVersions(Integer afterId, Integer beforeId, Integer size);
+
+    /**
+     * Version probe, reads the primary directly (not the caches, not the replica), like
+     * findEmployeeBySsn loads the edit form
+     * @param ssn
+     * @return EmployeeVersion or null
+     */
+    EmployeeVersion findVersionBySsn(String ssn);
+
     Employee findEmployeeBySsn(String ssn);
 
     boolean isEmployeeSsnUnique(Integer id, String ssn);
+
+    /**
+     * @param id
+     * @return EmployeeSummary or null, read without loading the employee
+     */
+    EmployeeSummary findSummaryById(int id);
+
+    /**
+     * @param ssn
+     * @return EmployeeSummary or null, read without loading the employee
+     */
+    EmployeeSummary findSummaryBySsn(String ssn);
+
+    /**
+     * Keyset paginated listing of summaries, ordered by id, paged like findEmployeePage
+     * @param afterId - cursor of the previous page's last row, null for the first page
+     * @param beforeId - cursor of the next page's first row when paging backwards, takes precedence over afterId
+     * @param size - requested page size, clamped like findEmployeePage
+     * @return KeysetPage
+     */
+    KeysetPage<EmployeeSummary> findSummaryPage(Integer afterId, Integer beforeId, Integer size);
+
+    /**
+     * Full-text search over names and text, see EmployeeSearchIndex
+     * @param query - words, all of them must be found
+     * @param size - maximum number of hits, clamped like findEmployeePage
+     * @return hits, best first, or null while the search index is being built
+     */
+    List<EmployeeSearchHit> searchEmployees(String query, Integer size);
+
+    /**
+     * Type-ahead over names and ssns, see EmployeeAutocompleteIndex
+     * @param prefix - what was typed so far
+     * @param size - maximum number of suggestions, clamped to EmployeeService.MAX_SUGGESTIONS
+     * @return suggestions, or null while the autocomplete index is being built
+     */
+    List<EmployeeSuggestion> suggestEmployees(String prefix, Integer size);
 }
@@ -0,0 +1,20 @@
+package com.marcuschiu.service.interfaces;
+
+import com.marcuschiu.data.model.entity.SalaryTotals;
+
+import java.util.List;
+
+public interface ISalaryTotalsService {
+
+    /**
+     * Headcount and payroll by joining year, read from the summary table alone (no EMPLOYEE scan)
+     * @return totals of the years having employees, ascending
+     */
+    List<SalaryTotals> findSalaryTotalsByJoiningYear();
+
+    /**
+     * Recomputes the summary table from the employees, for drift repair
+     * @return the rebuilt totals
+     */
+    List<SalaryTotals> rebuildSalaryTotals();
+}
@@ -0,0 +1,20 @@
+package com.marcuschiu.service.outbox;
+
+import com.marcuschiu.data.model.entity.EmployeeChangeEvent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where EmployeeOutboxRelay publishes the change events, chosen by its bean name (outbox.sink)
+ * delivery is at least once: a relay that fails after publish() and before its checkpoint is saved
+ * hands the same events over again, consumers drop the ids they have seen
+ */
+public interface EmployeeEventSink {
+
+    /**
+     * @param events - ascending ids, never empty
+     * @throws IOException - nothing is checkpointed, the events are published again
+     */
+    void publish(List<EmployeeChangeEvent> events) throws IOException;
+}
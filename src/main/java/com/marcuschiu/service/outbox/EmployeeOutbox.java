@@ -0,0 +1,56 @@
+package com.marcuschiu.service.outbox;
+
+import com.marcuschiu.data.model.entity.EmployeeChangeEvent;
+import com.marcuschiu.data.repository.v1.dao.EmployeeOutboxDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Appends EmployeeService's writes to the outbox in the writing transaction, unlike EmployeeChangePublisher
+ * a rolled back write leaves no event and a committed one always has its event
+ * EmployeeOutboxRelay publishes them
+ */
+@Component
+public class EmployeeOutbox {
+
+    @Value("${outbox.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private EmployeeOutboxDao outbox;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param ids - employees just inserted in the current transaction
+     */
+    public void created(Collection<Integer> ids) {
+        if (enabled) {
+            outbox.appendChanged(EmployeeChangeEvent.Type.CREATED, ids);
+        }
+    }
+
+    /**
+     * @param ids - employees just updated in the current transaction
+     */
+    public void updated(Collection<Integer> ids) {
+        if (enabled) {
+            outbox.appendChanged(EmployeeChangeEvent.Type.UPDATED, ids);
+        }
+    }
+
+    /**
+     * @param ssnsById - id to ssn of the employees just deleted in the current transaction
+     */
+    public void deleted(Map<Integer, String> ssnsById) {
+        if (enabled) {
+            outbox.appendDeleted(ssnsById);
+        }
+    }
+}
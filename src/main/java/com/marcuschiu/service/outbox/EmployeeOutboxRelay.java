@@ -0,0 +1,197 @@
+package com.marcuschiu.service.outbox;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.marcuschiu.data.model.entity.EmployeeChangeEvent;
+import com.marcuschiu.data.repository.v1.dao.EmployeeOutboxDao;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the outbox to the EmployeeEventSink named outbox.sink, every outbox.relay.intervalMillis
+ * - a batch (outbox.relay.batchSize events, in id order) is read, published and checkpointed in one transaction
+ *   holding the sink's checkpoint row, so of several app nodes only one relays at a time
+ * - appending transactions queue up on OUTBOX_APPEND_LOCK (EmployeeOutboxDao), so ids are committed in the order
+ *   they are taken: an id missing below a committed one belonged to a transaction that already rolled back,
+ *   it is passed over right away, and an event that is not committed yet is never behind the checkpoint
+ * - published events older than outbox.retentionHours are deleted once an hour, the last published one is
+ *   always kept (MySQL before 8.0 restarts AUTO_INCREMENT at the highest id left in the table)
+ * metrics "outbox.employee.*": published, skipped (ids of rolled back transactions), failures,
+ * checkpoint and backlog (events appended but not published yet, as of the last run)
+ */
+@Component("outbox.employee")
+public class EmployeeOutboxRelay implements MetricSet, InitializingBean {
+
+    private static final Log log = LogFactory.getLog(EmployeeOutboxRelay.class);
+
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Value("${outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.sink:fileEmployeeEventSink}")
+    private String sinkName;
+
+    @Value("${outbox.relay.batchSize:500}")
+    private int batchSize;
+
+    @Value("${outbox.retentionHours:168}")
+    private int retentionHours;
+
+    @Autowired
+    private EmployeeOutboxDao outbox;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BeanFactory beanFactory;
+
+    private EmployeeEventSink sink;
+
+    private TransactionTemplate transactions;
+
+    private long lastPurge;
+
+    private final Counter published = new Counter();
+
+    private final Counter skipped = new Counter();
+
+    private final Counter failures = new Counter();
+
+    private volatile long checkpoint;
+
+    private volatile long backlog;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) {
+            sink = beanFactory.getBean(sinkName, EmployeeEventSink.class);
+        }
+        transactions = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.intervalMillis:1000}")
+    public void scheduledRelay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            failures.inc();
+            log.error("relaying the employee outbox to " + sinkName + " failed, retrying with the next run", e);
+        }
+    }
+
+    /**
+     * Publishes batches until the outbox is drained
+     * @return number of events published
+     */
+    public synchronized long relay() {
+        long total = 0;
+        int count;
+        do {
+            count = transactions.execute(new TransactionCallback<Integer>() {
+                @Override
+                public Integer doInTransaction(TransactionStatus status) {
+                    return relayBatch();
+                }
+            });
+            total += count;
+        } while (count == batchSize);
+
+        if (System.currentTimeMillis() - lastPurge > PURGE_INTERVAL_MILLIS) {
+            lastPurge = System.currentTimeMillis();
+            purge();
+        }
+        return total;
+    }
+
+    /**
+     * @return number of events published, batchSize when more may be waiting
+     */
+    private int relayBatch() {
+        long last = outbox.lockCheckpoint(sinkName);
+        List<EmployeeChangeEvent> events = outbox.findAfterId(last, batchSize);
+        countRolledBack(last, events);
+        if (!events.isEmpty()) {
+            try {
+                sink.publish(events);
+            } catch (IOException e) {
+                throw new IllegalStateException("sink " + sinkName + " failed", e);
+            }
+            last = events.get(events.size() - 1).getId();
+            outbox.saveCheckpoint(sinkName, last);
+            published.inc(events.size());
+        }
+        checkpoint = last;
+        backlog = outbox.findLastId() - last;
+        return events.size();
+    }
+
+    /**
+     * @param checkpoint - id of the last published event
+     * @param events - the next committed events, ascending
+     */
+    private void countRolledBack(long checkpoint, List<EmployeeChangeEvent> events) {
+        long expected = checkpoint + 1;
+        for (EmployeeChangeEvent event : events) {
+            if (event.getId() != expected) {
+                skipped.inc(event.getId() - expected);
+                log.debug("employee outbox ids " + expected + " to " + (event.getId() - 1) + " were rolled back");
+            }
+            expected = event.getId() + 1;
+        }
+    }
+
+    private void purge() {
+        final long before = checkpoint;
+        final DateTime createdBefore = DateTime.now().minusHours(retentionHours);
+        int deleted = transactions.execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                return outbox.deleteBefore(before, createdBefore);
+            }
+        });
+        if (deleted > 0) {
+            log.info(deleted + " published employee outbox events older than " + retentionHours + " hours deleted");
+        }
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+        metrics.put("published", published);
+        metrics.put("skipped", skipped);
+        metrics.put("failures", failures);
+        metrics.put("checkpoint", new Gauge<Long>() {
+            @Override
+            public Long getValue() { return checkpoint; }
+        });
+        metrics.put("backlog", new Gauge<Long>() {
+            @Override
+            public Long getValue() { return backlog; }
+        });
+        return metrics;
+    }
+}
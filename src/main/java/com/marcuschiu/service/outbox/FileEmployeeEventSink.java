@@ -0,0 +1,114 @@
+package com.marcuschiu.service.outbox;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.marcuschiu.data.model.entity.EmployeeChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Default sink, appends the events to a local file (outbox.file) as one JSON object per line,
+ * null values left out, for consumers that tail the file
+ * - a batch is encoded first and written with one write, then forced to disk (outbox.file.sync)
+ *   before the relay saves its checkpoint
+ * - a batch cut short by a crash is cut off at the last complete line before the next append
+ */
+@Component("fileEmployeeEventSink")
+public class FileEmployeeEventSink implements EmployeeEventSink {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    @Value("${outbox.file:${java.io.tmpdir}/employee-events.ndjson}")
+    private String file;
+
+    @Value("${outbox.file.sync:true}")
+    private boolean sync;
+
+    private boolean checked;
+
+    @Override
+    public synchronized void publish(List<EmployeeChangeEvent> events) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(events.size() * 256);
+        try (JsonGenerator generator = FACTORY.createGenerator(lines, JsonEncoding.UTF8)) {
+            // separates root values with a line break instead of a space
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            for (EmployeeChangeEvent event : events) {
+                write(generator, event);
+            }
+            generator.writeRaw('\n');
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(new File(file), "rw")) {
+            FileChannel channel = raf.getChannel();
+            if (!checked) {
+                truncatePartialLine(channel);
+                checked = true;
+            }
+            channel.position(channel.size());
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        }
+    }
+
+    private static void write(JsonGenerator generator, EmployeeChangeEvent event) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", event.getId());
+        generator.writeStringField("type", event.getType().name());
+        generator.writeNumberField("employeeId", event.getEmployeeId());
+        generator.writeStringField("ssn", event.getSsn());
+        if (event.getVersion() != null) {
+            generator.writeNumberField("version", event.getVersion());
+        }
+        writeString(generator, "name", event.getName());
+        writeString(generator, "first", event.getFirst());
+        writeString(generator, "middle", event.getMiddle());
+        writeString(generator, "last", event.getLast());
+        writeString(generator, "joiningDate", event.getJoiningDate() == null ? null : event.getJoiningDate().toString());
+        writeString(generator, "birthDate", event.getBirthDate() == null ? null : event.getBirthDate().toString());
+        if (event.getSalary() != null) {
+            generator.writeNumberField("salary", event.getSalary());
+        }
+        writeString(generator, "text", event.getText());
+        generator.writeStringField("createdAt", event.getCreatedAt().toString());
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, String field, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(field, value);
+        }
+    }
+
+    /**
+     * Drops what follows the last line break, the rest of a batch whose write did not finish,
+     * its events were not checkpointed and come again
+     */
+    private static void truncatePartialLine(FileChannel channel) throws IOException {
+        long end = channel.size();
+        ByteBuffer one = ByteBuffer.allocate(1);
+        while (end > 0) {
+            one.clear();
+            channel.read(one, end - 1);
+            if (one.get(0) == '\n') {
+                break;
+            }
+            end--;
+        }
+        channel.truncate(end);
+    }
+}
@@ -0,0 +1,520 @@
+package com.marcuschiu.service.search;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.marcuschiu.data.model.bulk.EmployeeBulkUpdate;
+import com.marcuschiu.data.model.entity.Employee;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Type-ahead over the employees' names and ssns, two radix trees (names, ssns) mapping keys to employee ids
+ * - name keys: every word of the name and of its parts, and the whole name ("maria ja" completes "maria java"),
+ *   lower cased and without accents like EmployeeSearchIndex's words
+ * - ssn keys: the letters and digits of the ssn ("123-4" completes "123-45-6789")
+ * - suggest() returns k employees by their keys completing the prefix: shorter keys first ("al" before "aaron"),
+ *   keys of one length in alphabetical order, names before ssns; the part of the tree below the prefix
+ *   is walked shortest key first and only until k employees are found
+ * memory is linear in the employees: at most MAX_KEYS keys of at most MAX_KEY_LENGTH characters each,
+ * shared prefixes stored once, ids in int arrays
+ * loaded at startup by EmployeeIndexLoader, kept up to date by EmployeeService's writes
+ * metrics "autocomplete.employee.*": ready, buildMillis, employees, keys, nodes, lookups
+ */
+@Component("autocomplete.employee")
+public class EmployeeAutocompleteIndex extends EmployeeIndex {
+
+    static final int MAX_KEY_LENGTH = 32;
+
+    static final int MAX_KEYS = 8;
+
+    private static final int[] NO_IDS = new int[0];
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    @Value("${autocomplete.enabled:true}")
+    private boolean enabled;
+
+    private final Node names = new Node(new char[0]);
+
+    private final Node ssns = new Node(new char[0]);
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    private int keys;
+
+    private int nodes;
+
+    private final Counter lookups = new Counter();
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    protected void add(Employee employee) {
+        put(employee.getId(), employee.getSsn(), employee.getName(), nameParts(employee.getNameTwo()));
+    }
+
+    @Override
+    protected String describe() {
+        return entries.size() + " employees, " + keys + " keys, " + nodes + " nodes";
+    }
+
+    /**
+     * @param prefix - what was typed so far
+     * @param limit - maximum number of suggestions
+     * @return suggestions, or null while the index is not built
+     */
+    public List<EmployeeSuggestion> suggest(String prefix, int limit) {
+        if (!isReady()) {
+            return null;
+        }
+        lookups.inc();
+        List<String> words = words(prefix);
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String name = truncate(join(words, " "));
+        String ssn = truncate(join(words, ""));
+
+        lock.readLock().lock();
+        try {
+            Set<Integer> ids = new LinkedHashSet<>();
+            collect(find(names, name), limit, ids);
+            collect(find(ssns, ssn), limit, ids);
+
+            List<EmployeeSuggestion> suggestions = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                Entry entry = entries.get(id);
+                suggestions.add(new EmployeeSuggestion(id, entry.ssn, entry.name));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void saved(Collection<Employee> employees, Map<Integer, String> previousSsns) {
+        final List<Employee> saved = new ArrayList<>(employees);
+        change(new Runnable() {
+            @Override
+            public void run() {
+                for (Employee employee : saved) {
+                    String[] nameParts;
+                    if (employee.getNameTwo() != null) {
+                        nameParts = nameParts(employee.getNameTwo());
+                    } else {
+                        Entry indexed = entries.get(employee.getId());
+                        nameParts = indexed == null ? NO_NAME_PARTS : indexed.nameParts;
+                    }
+                    put(employee.getId(), employee.getSsn(), employee.getName(), nameParts);
+                }
+            }
+        });
+    }
+
+    /**
+     * Bulk updates change neither names nor ssns
+     */
+    @Override
+    public void updated(Map<Integer, String> ssnsById, EmployeeBulkUpdate update) {
+    }
+
+    @Override
+    public void deleted(final Map<Integer, String> ssnsById) {
+        change(new Runnable() {
+            @Override
+            public void run() {
+                for (Integer id : ssnsById.keySet()) {
+                    remove(id);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the employee's keys, under the write lock
+     */
+    private void put(int id, String ssn, String name, String[] nameParts) {
+        remove(id);
+
+        Set<String> nameKeys = new LinkedHashSet<>();
+        List<String> nameWords = words(name);
+        if (nameWords.size() > 1) {
+            nameKeys.add(truncate(join(nameWords, " ")));
+        }
+        List<String> partWords = new ArrayList<>(nameWords);
+        for (String part : nameParts) {
+            partWords.addAll(words(part));
+        }
+        for (String word : partWords) {
+            if (nameKeys.size() == MAX_KEYS - 1) {
+                break;
+            }
+            nameKeys.add(truncate(word));
+        }
+        String ssnKey = truncate(join(words(ssn), ""));
+
+        for (String key : nameKeys) {
+            insert(names, key, id);
+        }
+        if (!ssnKey.isEmpty()) {
+            insert(ssns, ssnKey, id);
+        }
+        entries.put(id, new Entry(ssn, name, nameParts, nameKeys.toArray(new String[nameKeys.size()]), ssnKey));
+    }
+
+    private void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (String key : entry.nameKeys) {
+            delete(names, key, id);
+        }
+        if (!entry.ssnKey.isEmpty()) {
+            delete(ssns, entry.ssnKey, id);
+        }
+    }
+
+    private void insert(Node root, String key, int id) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.childIndex(key.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(i).toCharArray());
+                nodes++;
+                node.insertChild(-index - 1, leaf);
+                node = leaf;
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length) {
+                // the key leaves the edge in the middle, split it
+                Node split = new Node(Arrays.copyOf(child.label, common));
+                nodes++;
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                split.insertChild(0, child);
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.addId(id)) {
+            keys++;
+        }
+    }
+
+    private void delete(Node root, String key, int id) {
+        // path from the root to the key's node, and each node's index in its parent
+        List<Node> path = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.childIndex(key.charAt(i));
+            if (index < 0) {
+                return;
+            }
+            node = node.children[index];
+            if (commonPrefix(node.label, key, i) < node.label.length) {
+                return;
+            }
+            i += node.label.length;
+            path.add(node);
+            indexes.add(index);
+        }
+        if (!node.removeId(id)) {
+            return;
+        }
+        keys--;
+
+        // drop nodes left without ids and children, fold a node without ids into its only child
+        for (int depth = path.size() - 1; depth > 0; depth--) {
+            Node current = path.get(depth);
+            Node parent = path.get(depth - 1);
+            int index = indexes.get(depth - 1);
+            if (current.idCount > 0) {
+                return;
+            }
+            if (current.childCount == 0) {
+                parent.removeChild(index);
+                nodes--;
+                continue;
+            }
+            if (current.childCount == 1) {
+                Node only = current.children[0];
+                char[] label = Arrays.copyOf(current.label, current.label.length + only.label.length);
+                System.arraycopy(only.label, 0, label, current.label.length, only.label.length);
+                only.label = label;
+                parent.children[index] = only;
+                nodes--;
+            }
+            return;
+        }
+    }
+
+    /**
+     * @return the node of the keys starting with the prefix, null when there are none
+     */
+    private static Node find(Node root, String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int index = node.childIndex(prefix.charAt(i));
+            if (index < 0) {
+                return null;
+            }
+            node = node.children[index];
+            int common = commonPrefix(node.label, prefix, i);
+            if (common < node.label.length && i + common < prefix.length()) {
+                return null;
+            }
+            i += common;
+        }
+        return node;
+    }
+
+    /**
+     * Best first from node: the queue holds nodes ordered by their key, shortest first, a node's ids
+     * are taken when it is polled and its children queued, until limit ids are collected
+     * keys are compared below node, they all start with its key
+     */
+    private static void collect(Node node, int limit, Set<Integer> ids) {
+        if (node == null) {
+            return;
+        }
+        PriorityQueue<Completion> queue = new PriorityQueue<>();
+        queue.add(new Completion(node, ""));
+        while (!queue.isEmpty() && ids.size() < limit) {
+            Completion next = queue.poll();
+            for (int i = 0; i < next.node.idCount && ids.size() < limit; i++) {
+                ids.add(next.node.ids[i]);
+            }
+            for (int i = 0; i < next.node.childCount; i++) {
+                Node child = next.node.children[i];
+                queue.add(new Completion(child, next.key + new String(child.label)));
+            }
+        }
+    }
+
+    private static int commonPrefix(char[] label, String key, int offset) {
+        int max = Math.min(label.length, key.length() - offset);
+        int i = 0;
+        while (i < max && label[i] == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String join(List<String> words, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (String word : words) {
+            if (joined.length() > 0) {
+                joined.append(separator);
+            }
+            joined.append(word);
+        }
+        return joined.toString();
+    }
+
+    private static String truncate(String key) {
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    public int employeeCount() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int keyCount() {
+        lock.readLock().lock();
+        try {
+            return keys;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = super.getMetrics();
+        metrics.put("employees", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() { return employeeCount(); }
+        });
+        metrics.put("keys", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() { return keyCount(); }
+        });
+        metrics.put("nodes", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() { return nodeCount(); }
+        });
+        metrics.put("lookups", lookups);
+        return metrics;
+    }
+
+    /**
+     * Radix tree node, children ordered by the first character of their label, ids ascending
+     */
+    private static final class Node {
+
+        char[] label;
+
+        Node[] children = NO_CHILDREN;
+
+        int childCount;
+
+        int[] ids = NO_IDS;
+
+        int idCount;
+
+        Node(char[] label) {
+            this.label = label;
+        }
+
+        /**
+         * @return index of the child whose label starts with c, or (-(insertion point) - 1)
+         */
+        int childIndex(char c) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char first = children[middle].label[0];
+                if (first < c) {
+                    low = middle + 1;
+                } else if (first > c) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void insertChild(int index, Node child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, childCount == 0 ? 2 : childCount * 2);
+            }
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            children[index] = child;
+            childCount++;
+        }
+
+        void removeChild(int index) {
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            children[--childCount] = null;
+        }
+
+        /**
+         * @return boolean - false when the id was there already
+         */
+        boolean addId(int id) {
+            int index = Arrays.binarySearch(ids, 0, idCount, id);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, idCount == 0 ? 1 : idCount + (idCount >> 1) + 1);
+            }
+            System.arraycopy(ids, index, ids, index + 1, idCount - index);
+            ids[index] = id;
+            idCount++;
+            return true;
+        }
+
+        boolean removeId(int id) {
+            int index = Arrays.binarySearch(ids, 0, idCount, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, idCount - index - 1);
+            idCount--;
+            if (idCount == 0) {
+                ids = NO_IDS;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A node queued by collect(), with its key below the node collect() started from
+     */
+    private static final class Completion implements Comparable<Completion> {
+
+        final Node node;
+
+        final String key;
+
+        Completion(Node node, String key) {
+            this.node = node;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Completion other) {
+            if (key.length() != other.key.length()) {
+                return key.length() < other.key.length() ? -1 : 1;
+            }
+            return key.compareTo(other.key);
+        }
+    }
+
+    /**
+     * What is kept of an indexed employee, to show it and to remove its keys
+     */
+    private static final class Entry {
+
+        final String ssn;
+
+        final String name;
+
+        final String[] nameParts;
+
+        final String[] nameKeys;
+
+        final String ssnKey;
+
+        Entry(String ssn, String name, String[] nameParts, String[] nameKeys, String ssnKey) {
+            this.ssn = ssn;
+            this.name = name;
+            this.nameParts = nameParts;
+            this.nameKeys = nameKeys;
+            this.ssnKey = ssnKey;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.marcuschiu.service.search;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.marcuschiu.data.model.embeddable.Name;
+import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.service.event.EmployeeChangeListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory structure over all employees, filled at startup by EmployeeIndexLoader and then
+ * kept up to date by EmployeeService's committed writes (EmployeeChangeListener)
+ * changes received while the loader scans are queued and replayed once the scan is done,
+ * they are newer than (or as new as) the rows scanned
+ * readers take lock's read lock, add() and the changes run under the write lock
+ * registered by MetricsConfig's MetricSetRegistrar under the bean name: ready, buildMillis
+ * and what the subclass adds to getMetrics()
+ */
+public abstract class EmployeeIndex implements EmployeeChangeListener, MetricSet {
+
+    protected static final String[] NO_NAME_PARTS = new String[0];
+
+    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * changes received while the index is built, null when not building
+     */
+    private List<Runnable> pendingChanges;
+
+    private long buildStart;
+
+    private volatile long buildMillis;
+
+    private volatile boolean ready;
+
+    /**
+     * @return boolean - false leaves the index empty and never ready
+     */
+    public abstract boolean isEnabled();
+
+    /**
+     * Indexes a scanned employee, under the write lock
+     * @param employee - transient, with its name parts
+     */
+    protected abstract void add(Employee employee);
+
+    /**
+     * @return String - size of the index for the startup log, e.g. "1000 employees"
+     */
+    protected abstract String describe();
+
+    final void beginBuild() {
+        lock.writeLock().lock();
+        try {
+            buildStart = System.nanoTime();
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    final void addAll(List<Employee> employees) {
+        lock.writeLock().lock();
+        try {
+            for (Employee employee : employees) {
+                add(employee);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return int - number of changes replayed
+     */
+    final int endBuild() {
+        lock.writeLock().lock();
+        try {
+            int replayed = pendingChanges.size();
+            for (Runnable change : pendingChanges) {
+                change.run();
+            }
+            pendingChanges = null;
+            buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStart);
+            ready = true;
+            return replayed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ends a failed build: the queued changes are dropped and later ones are applied right away,
+     * the index stays not ready (and is never read)
+     */
+    final void abortBuild() {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a change now, or after the scan while the index is built
+     * @param change - runs under the write lock
+     */
+    protected final void change(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            } else {
+                change.run();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+        metrics.put("ready", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() { return ready ? 1 : 0; }
+        });
+        metrics.put("buildMillis", new Gauge<Long>() {
+            @Override
+            public Long getValue() { return buildMillis; }
+        });
+        return metrics;
+    }
+
+    /**
+     * @param value - may be null
+     * @return the words of the value, lower cased and without accents, in order
+     */
+    protected static List<String> words(String value) {
+        if (value == null || value.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String normalized = Normalizer.normalize(value, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && word.length() > 0) {
+                // accents were split off their letters by NFD and are dropped without ending the word
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * @param name - may be null
+     * @return the non empty parts of the name, first, middle, last
+     */
+    protected static String[] nameParts(Name name) {
+        if (name == null) {
+            return NO_NAME_PARTS;
+        }
+        List<String> parts = new ArrayList<>(3);
+        for (String part : new String[]{name.getFirst(), name.getMiddle(), name.getLast()}) {
+            if (part != null && !part.isEmpty()) {
+                parts.add(part);
+            }
+        }
+        return parts.toArray(new String[parts.size()]);
+    }
+}
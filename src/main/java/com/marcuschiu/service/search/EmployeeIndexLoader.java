@@ -0,0 +1,139 @@
+package com.marcuschiu.service.search;
+
+import com.marcuschiu.data.model.entity.Employee;
+import com.marcuschiu.data.repository.v1.dao.EmployeeDao;
+import com.marcuschiu.data.repository.v1.dao.ScrollCallback;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills every enabled EmployeeIndex on a background thread once the context is started,
+ * with a single streaming scan of the employees (EmployeeDao.scrollAll) shared by all of them
+ * a failed scan is logged and leaves the indexes not ready (EmployeeIndex.abortBuild), the application runs without them
+ */
+@Component
+public class EmployeeIndexLoader implements SmartLifecycle {
+
+    private static final Log log = LogFactory.getLog(EmployeeIndexLoader.class);
+
+    // employees indexed per write lock, readers are not held up for the whole scan
+    private static final int BATCH = 1000;
+
+    @Autowired
+    private EmployeeDao employeeRepository;
+
+    private List<EmployeeIndex> indexes = Collections.emptyList();
+
+    private volatile boolean running;
+
+    @Autowired(required = false)
+    public void setIndexes(List<EmployeeIndex> indexes) {
+        this.indexes = indexes;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        final List<EmployeeIndex> enabled = new ArrayList<>();
+        for (EmployeeIndex index : indexes) {
+            if (index.isEnabled()) {
+                enabled.add(index);
+            }
+        }
+        if (enabled.isEmpty()) {
+            return;
+        }
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                load(enabled);
+            }
+        }, "employee-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void load(final List<EmployeeIndex> enabled) {
+        long start = System.nanoTime();
+        for (EmployeeIndex index : enabled) {
+            index.beginBuild();
+        }
+        try {
+            final List<Employee> batch = new ArrayList<>(BATCH);
+            employeeRepository.scrollAll(new ScrollCallback<Employee>() {
+                @Override
+                public void process(Employee employee) throws IOException {
+                    if (!running) {
+                        throw new InterruptedIOException("stopped while loading the employee indexes");
+                    }
+                    batch.add(employee);
+                    if (batch.size() == BATCH) {
+                        addAll(enabled, batch);
+                        batch.clear();
+                    }
+                }
+            });
+            addAll(enabled, batch);
+        } catch (IOException | RuntimeException e) {
+            log.error("loading the employee indexes failed, they stay unavailable", e);
+            for (EmployeeIndex index : enabled) {
+                index.abortBuild();
+            }
+            return;
+        }
+
+        StringBuilder report = new StringBuilder("employee indexes loaded in ")
+                .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).append(" ms:");
+        for (EmployeeIndex index : enabled) {
+            int replayed = index.endBuild();
+            report.append(' ').append(index.getClass().getSimpleName()).append(" (").append(index.describe())
+                    .append(", ").append(replayed).append(" change(s) replayed)");
+        }
+        log.info(report);
+    }
+
+    private static void addAll(List<EmployeeIndex> enabled, List<Employee> batch) {
+        for (EmployeeIndex index : enabled) {
+            index.addAll(batch);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    /**
+     * After FlywayMigrationRunner, the schema is migrated when the scan starts
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.marcuschiu.service.search;
+
+/**
+ * One employee found by EmployeeSearchIndex, enough to show it and to link to it
+ */
+public class EmployeeSearchHit {
+
+    private final int id;
+
+    private final String ssn;
+
+    private final String name;
+
+    private final float score;
+
+    public EmployeeSearchHit(int id, String ssn, String name, float score) {
+        this.id = id;
+        this.ssn = ssn;
+        this.name = name;
+        this.score = score;
+    }
+
+    public int getId() { return id; }
+
+    public String getSsn() { return ssn; }
+
+    public String getName() { return name; }
+
+    /**
+     * @return float - relevance, only comparable between the hits of one search
+     */
+    public float getScore() { return score; }
+}
@@ -0,0 +1,383 @@
+package com.marcuschiu.service.search;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.marcuschiu.data.model.bulk.EmployeeBulkUpdate;
+import com.marcuschiu.data.model.entity.Employee;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-process inverted index over the employees' name, name parts (first/middle/last) and text
+ * - words are lower cased, stripped of accents and split at anything that is not a letter or a digit
+ * - a search returns the employees having every word of the query, ranked with BM25, words found in
+ *   the names weigh more than words in the text
+ * - loaded at startup by EmployeeIndexLoader, search() answers null until then
+ * - kept up to date by EmployeeService's writes through EmployeeChangePublisher
+ *   (writes that bypass EmployeeService, e.g. EmployeeRepository, are only seen by the next start)
+ * - metrics "search.employee.*": ready, buildMillis, employees, words, searches
+ */
+@Component("search.employee")
+public class EmployeeSearchIndex extends EmployeeIndex {
+
+    private static final float NAME_WEIGHT = 2f;
+
+    private static final float TEXT_WEIGHT = 1f;
+
+    // BM25 term frequency saturation and length normalization
+    private static final float K1 = 1.2f;
+
+    private static final float B = 0.75f;
+
+    @Value("${search.index.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private final Map<Integer, Document> documents = new HashMap<>();
+
+    private double totalLength;
+
+    private final Counter searches = new Counter();
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    protected void add(Employee employee) {
+        put(employee.getId(), employee.getSsn(), employee.getName(), nameParts(employee.getNameTwo()), employee.getText());
+    }
+
+    @Override
+    protected String describe() {
+        return documents.size() + " employees, " + postings.size() + " words";
+    }
+
+    /**
+     * @param query - words, all of them must be found
+     * @param limit - maximum number of hits
+     * @return hits, best first, or null while the index is not built
+     */
+    public List<EmployeeSearchHit> search(String query, int limit) {
+        if (!isReady()) {
+            return null;
+        }
+        searches.inc();
+        Set<String> words = new LinkedHashSet<>(words(query));
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[words.size()];
+            int i = 0;
+            for (String word : words) {
+                lists[i] = postings.get(word);
+                if (lists[i] == null) {
+                    return Collections.emptyList();
+                }
+                i++;
+            }
+            // walk the rarest word's employees, look the others up in theirs
+            Arrays.sort(lists, new Comparator<Postings>() {
+                @Override
+                public int compare(Postings a, Postings b) {
+                    return Integer.compare(a.size, b.size);
+                }
+            });
+
+            int count = documents.size();
+            double averageLength = totalLength / count;
+            float[] idf = new float[lists.length];
+            for (i = 0; i < lists.length; i++) {
+                idf[i] = (float) Math.log(1 + (count - lists[i].size + 0.5) / (lists[i].size + 0.5));
+            }
+
+            PriorityQueue<Scored> best = new PriorityQueue<>(Math.min(limit, lists[0].size) + 1);
+            Postings rarest = lists[0];
+            candidates:
+            for (int p = 0; p < rarest.size; p++) {
+                int id = rarest.ids[p];
+                Document document = documents.get(id);
+                double norm = K1 * (1 - B + B * document.length / averageLength);
+                double score = idf[0] * bm25(rarest.weights[p], norm);
+                for (i = 1; i < lists.length; i++) {
+                    int index = lists[i].indexOf(id);
+                    if (index < 0) {
+                        continue candidates;
+                    }
+                    score += idf[i] * bm25(lists[i].weights[index], norm);
+                }
+                best.add(new Scored(document, (float) score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+
+            EmployeeSearchHit[] hits = new EmployeeSearchHit[best.size()];
+            for (i = hits.length - 1; i >= 0; i--) {
+                Scored scored = best.poll();
+                hits[i] = new EmployeeSearchHit(scored.document.id, scored.document.ssn, scored.document.name, scored.score);
+            }
+            return Arrays.asList(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static double bm25(float weight, double norm) {
+        return weight * (K1 + 1) / (weight + norm);
+    }
+
+    @Override
+    public void saved(Collection<Employee> employees, Map<Integer, String> previousSsns) {
+        final List<Employee> saved = new ArrayList<>(employees);
+        change(new Runnable() {
+            @Override
+            public void run() {
+                for (Employee employee : saved) {
+                    String[] nameParts;
+                    if (employee.getNameTwo() != null) {
+                        nameParts = nameParts(employee.getNameTwo());
+                    } else {
+                        Document indexed = documents.get(employee.getId());
+                        nameParts = indexed == null ? NO_NAME_PARTS : indexed.nameParts;
+                    }
+                    put(employee.getId(), employee.getSsn(), employee.getName(), nameParts, employee.getText());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void updated(final Map<Integer, String> ssnsById, final EmployeeBulkUpdate update) {
+        if (update.getText() == null) {
+            return;
+        }
+        change(new Runnable() {
+            @Override
+            public void run() {
+                for (Integer id : ssnsById.keySet()) {
+                    Document indexed = documents.get(id);
+                    if (indexed != null) {
+                        put(id, indexed.ssn, indexed.name, indexed.nameParts, update.getText());
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void deleted(final Map<Integer, String> ssnsById) {
+        change(new Runnable() {
+            @Override
+            public void run() {
+                for (Integer id : ssnsById.keySet()) {
+                    remove(id);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the employee's words, under the write lock
+     */
+    private void put(int id, String ssn, String name, String[] nameParts, String text) {
+        remove(id);
+
+        Map<String, float[]> weights = new LinkedHashMap<>();
+        float length = weigh(weights, name, NAME_WEIGHT);
+        for (String part : nameParts) {
+            length += weigh(weights, part, NAME_WEIGHT);
+        }
+        length += weigh(weights, text, TEXT_WEIGHT);
+
+        for (Map.Entry<String, float[]> word : weights.entrySet()) {
+            Postings list = postings.get(word.getKey());
+            if (list == null) {
+                list = new Postings();
+                postings.put(word.getKey(), list);
+            }
+            list.put(id, word.getValue()[0]);
+        }
+        documents.put(id, new Document(id, ssn, name, nameParts, weights.keySet().toArray(new String[weights.size()]), length));
+        totalLength += length;
+    }
+
+    private static float weigh(Map<String, float[]> weights, String value, float weight) {
+        float length = 0;
+        for (String word : words(value)) {
+            float[] sum = weights.get(word);
+            if (sum == null) {
+                sum = new float[1];
+                weights.put(word, sum);
+            }
+            sum[0] += weight;
+            length += weight;
+        }
+        return length;
+    }
+
+    private void remove(int id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String word : document.words) {
+            Postings list = postings.get(word);
+            list.remove(id);
+            if (list.size == 0) {
+                postings.remove(word);
+            }
+        }
+        totalLength -= document.length;
+    }
+
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = super.getMetrics();
+        metrics.put("employees", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() { return documentCount(); }
+        });
+        metrics.put("words", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() { return termCount(); }
+        });
+        metrics.put("searches", searches);
+        return metrics;
+    }
+
+    /**
+     * Employee ids having one word, ascending, each with the word's weight in that employee
+     */
+    private static final class Postings {
+
+        int[] ids = new int[4];
+
+        float[] weights = new float[4];
+
+        int size;
+
+        int indexOf(int id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        /**
+         * ids mostly come in ascending order (the build scans by id, new employees get higher ids),
+         * those are appended
+         */
+        void put(int id, float weight) {
+            int index = indexOf(id);
+            if (index >= 0) {
+                weights[index] = weight;
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                int capacity = size + (size >> 1) + 1;
+                ids = Arrays.copyOf(ids, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(weights, index, weights, index + 1, size - index);
+            ids[index] = id;
+            weights[index] = weight;
+            size++;
+        }
+
+        void remove(int id) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+            size--;
+        }
+    }
+
+    /**
+     * What is kept of an indexed employee
+     */
+    private static final class Document {
+
+        final int id;
+
+        final String ssn;
+
+        final String name;
+
+        final String[] nameParts;
+
+        final String[] words;
+
+        final float length;
+
+        Document(int id, String ssn, String name, String[] nameParts, String[] words, float length) {
+            this.id = id;
+            this.ssn = ssn;
+            this.name = name;
+            this.nameParts = nameParts;
+            this.words = words;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Ordered worst first, the head of the top-k heap is the one to drop
+     */
+    private static final class Scored implements Comparable<Scored> {
+
+        final Document document;
+
+        final float score;
+
+        Scored(Document document, float score) {
+            this.document = document;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Scored other) {
+            int byScore = Float.compare(score, other.score);
+            // equal scores: the lower id ranks higher
+            return byScore != 0 ? byScore : Integer.compare(other.document.id, document.id);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.marcuschiu.service.search;
+
+/**
+ * One completion of EmployeeAutocompleteIndex
+ */
+public class EmployeeSuggestion {
+
+    private final int id;
+
+    private final String ssn;
+
+    private final String name;
+
+    public EmployeeSuggestion(int id, String ssn, String name) {
+        this.id = id;
+        this.ssn = ssn;
+        this.name = name;
+    }
+
+    public int getId() { return id; }
+
+    public String getSsn() { return ssn; }
+
+    public String getName() { return name; }
+}
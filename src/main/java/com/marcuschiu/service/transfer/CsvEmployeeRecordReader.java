@@ -0,0 +1,100 @@
+package com.marcuschiu.service.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RFC 4180 style CSV: comma separated, fields may be "quoted" with "" as an escaped quote
+ * the first line is the header, columns are matched to EmployeeRecords.COLUMNS by name
+ * (case insensitive, unknown columns are ignored, order does not matter)
+ * quoted fields spanning several lines are not supported
+ */
+class CsvEmployeeRecordReader extends EmployeeRecordReader {
+
+    private String[] header;
+
+    CsvEmployeeRecordReader(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public Map<String, String> next() throws IOException {
+        if (header == null) {
+            String line = readLine();
+            if (line == null) {
+                return null;
+            }
+            header = resolveHeader(split(line));
+        }
+        return super.next();
+    }
+
+    @Override
+    protected Map<String, String> parse(String line) {
+        List<String> values = split(line);
+        if (values.size() > header.length) {
+            throw new MalformedRecordException("expected at most " + header.length + " fields but found " + values.size());
+        }
+        Map<String, String> record = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (header[i] != null) {
+                record.put(header[i], values.get(i));
+            }
+        }
+        return record;
+    }
+
+    private static String[] resolveHeader(List<String> names) {
+        String[] header = new String[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim();
+            // a UTF-8 byte order mark sticks to the first column name
+            if (i == 0 && name.startsWith("\uFEFF")) {
+                name = name.substring(1);
+            }
+            for (String column : EmployeeRecords.COLUMNS) {
+                if (column.equalsIgnoreCase(name)) {
+                    header[i] = column;
+                }
+            }
+        }
+        return header;
+    }
+
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new MalformedRecordException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,53 @@
+package com.marcuschiu.service.transfer;
+
+import com.google.common.base.Charsets;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * CSV in the layout CsvEmployeeRecordReader reads: header line first,
+ * fields containing a comma, a quote or a line break are quoted
+ */
+class CsvEmployeeRecordWriter extends EmployeeRecordWriter {
+
+    private final Writer writer;
+
+    CsvEmployeeRecordWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, Charsets.UTF_8), 64 * 1024);
+        writeLine(EmployeeRecords.COLUMNS);
+    }
+
+    @Override
+    public void write(String[] values) throws IOException {
+        writeLine(values);
+    }
+
+    private void writeLine(String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,43 @@
+package com.marcuschiu.service.transfer;
+
+/**
+ * File formats employees can be imported from / exported to
+ * - CSV - header line with column names (see EmployeeRecords.COLUMNS), then one employee per line
+ * - NDJSON - one JSON object per line, keyed by the same column names
+ */
+public enum EmployeeFormat {
+
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+
+    private final String extension;
+
+    EmployeeFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() { return contentType; }
+
+    public String getExtension() { return extension; }
+
+    /**
+     * @param format - explicit format name (csv/ndjson), may be null
+     * @param filename - used to guess the format from its extension when no name is given, may be null
+     * @return EmployeeFormat, CSV when nothing matches
+     */
+    public static EmployeeFormat resolve(String format, String filename) {
+        if (format != null && !format.isEmpty()) {
+            return valueOf(format.trim().toUpperCase());
+        }
+        if (filename != null) {
+            String lower = filename.toLowerCase();
+            if (lower.endsWith(".ndjson") || lower.endsWith(".jsonl") || lower.endsWith(".json")) {
+                return NDJSON;
+            }
+        }
+        return CSV;
+    }
+}
@@ -0,0 +1,83 @@
+package com.marcuschiu.service.transfer;
+
+import com.google.common.base.Charsets;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Map;
+
+/**
+ * Reads employee records one at a time from a stream, never holding more than
+ * the current line in memory
+ * blank lines are skipped, a malformed line throws MalformedRecordException
+ * and reading can continue with the next line
+ */
+public abstract class EmployeeRecordReader implements Closeable {
+
+    private final BufferedReader reader;
+
+    private int lineNumber;
+
+    protected EmployeeRecordReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, Charsets.UTF_8), 64 * 1024);
+    }
+
+    public static EmployeeRecordReader open(InputStream in, EmployeeFormat format) throws IOException {
+        switch (format) {
+            case NDJSON:
+                return new NdjsonEmployeeRecordReader(in);
+            default:
+                return new CsvEmployeeRecordReader(in);
+        }
+    }
+
+    /**
+     * @return next record (column name to raw value), null at the end of the stream
+     * @throws IOException - reading the stream failed
+     * @throws MalformedRecordException - the line could not be parsed, it is skipped
+     */
+    public Map<String, String> next() throws IOException {
+        String line;
+        do {
+            line = readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.trim().isEmpty());
+        return parse(line);
+    }
+
+    /**
+     * @return line number (1-based) of the last line read
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    protected String readLine() throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            lineNumber++;
+        }
+        return line;
+    }
+
+    protected abstract Map<String, String> parse(String line);
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * A single line that could not be parsed
+     */
+    public static class MalformedRecordException extends RuntimeException {
+        public MalformedRecordException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.marcuschiu.service.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes employee records (EmployeeRecords.COLUMNS order) to a stream as they come,
+ * only a small output buffer is held in memory
+ * counterpart of EmployeeRecordReader, anything written can be imported again
+ */
+public abstract class EmployeeRecordWriter implements Closeable {
+
+    public static EmployeeRecordWriter open(OutputStream out, EmployeeFormat format) throws IOException {
+        switch (format) {
+            case NDJSON:
+                return new NdjsonEmployeeRecordWriter(out);
+            default:
+                return new CsvEmployeeRecordWriter(out);
+        }
+    }
+
+    /**
+     * @param values - one value per column in EmployeeRecords.COLUMNS order, nulls allowed
+     * @throws IOException
+     */
+    public abstract void write(String[] values) throws IOException;
+}
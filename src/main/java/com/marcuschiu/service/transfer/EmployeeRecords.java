@@ -0,0 +1,114 @@
+package com.marcuschiu.service.transfer;
+
+import com.marcuschiu.data.model.embeddable.Name;
+import com.marcuschiu.data.model.entity.Employee;
+import org.joda.time.LocalDate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column layout shared by the import and export formats, and the conversion
+ * of a raw record (column name to text value) into an Employee
+ * dates are ISO-8601 (yyyy-MM-dd), salary is a plain decimal
+ */
+public final class EmployeeRecords {
+
+    public static final String NAME = "name";
+    public static final String SSN = "ssn";
+    public static final String JOINING_DATE = "joiningDate";
+    public static final String BIRTH_DATE = "birthDate";
+    public static final String SALARY = "salary";
+    public static final String TEXT = "text";
+    public static final String FIRST = "first";
+    public static final String MIDDLE = "middle";
+    public static final String LAST = "last";
+
+    public static final String[] COLUMNS = {NAME, SSN, JOINING_DATE, BIRTH_DATE, SALARY, TEXT, FIRST, MIDDLE, LAST};
+
+    private EmployeeRecords() {
+    }
+
+    /**
+     * Converts what can be converted, values that do not parse are reported
+     * and left null (bean validation then also flags the ones that are required)
+     * @param record - column name to raw value, missing columns are null
+     * @param problems - conversion problems are added here as "column: message"
+     * @return Employee - not validated
+     */
+    public static Employee toEmployee(Map<String, String> record, List<String> problems) {
+        Employee employee = new Employee();
+        employee.setName(text(record.get(NAME)));
+        employee.setSsn(text(record.get(SSN)));
+        employee.setText(text(record.get(TEXT)));
+        employee.setJoiningDate(date(record, JOINING_DATE, problems));
+        employee.setBirthDate(date(record, BIRTH_DATE, problems));
+        employee.setSalary(decimal(record, SALARY, problems));
+
+        String first = text(record.get(FIRST));
+        String middle = text(record.get(MIDDLE));
+        String last = text(record.get(LAST));
+        if (first != null || middle != null || last != null) {
+            Name name = new Name();
+            name.setFirst(first);
+            name.setMiddle(middle);
+            name.setLast(last);
+            employee.setNameTwo(name);
+        }
+        return employee;
+    }
+
+    /**
+     * @param employee
+     * @return the employee's values in COLUMNS order, null for missing values
+     */
+    public static String[] toValues(Employee employee) {
+        Name name = employee.getNameTwo() == null ? new Name() : employee.getNameTwo();
+        return new String[] {
+                employee.getName(),
+                employee.getSsn(),
+                employee.getJoiningDate() == null ? null : employee.getJoiningDate().toString(),
+                employee.getBirthDate() == null ? null : employee.getBirthDate().toString(),
+                employee.getSalary() == null ? null : employee.getSalary().toPlainString(),
+                employee.getText(),
+                name.getFirst(),
+                name.getMiddle(),
+                name.getLast()
+        };
+    }
+
+    private static String text(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static LocalDate date(Map<String, String> record, String column, List<String> problems) {
+        String value = text(record.get(column));
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (IllegalArgumentException e) {
+            problems.add(column + ": invalid date '" + value + "', expected yyyy-MM-dd");
+            return null;
+        }
+    }
+
+    private static BigDecimal decimal(Map<String, String> record, String column, List<String> problems) {
+        String value = text(record.get(column));
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            problems.add(column + ": invalid number '" + value + "'");
+            return null;
+        }
+    }
+}
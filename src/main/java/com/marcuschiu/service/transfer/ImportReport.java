@@ -0,0 +1,75 @@
+package com.marcuschiu.service.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: counts plus the errors of the rejected rows
+ * only the first maxReportedErrors errors are kept, the rest are only counted
+ */
+public class ImportReport {
+
+    private final int maxReportedErrors;
+
+    private final List<RowError> errors = new ArrayList<>();
+
+    private int rowsRead;
+
+    private int rowsImported;
+
+    private int rowsRejected;
+
+    private long elapsedMillis;
+
+    public ImportReport(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public void rowRead() {
+        rowsRead++;
+    }
+
+    public void rowsImported(int count) {
+        rowsImported += count;
+    }
+
+    public void reject(int line, String message) {
+        rowsRejected++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    public void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+
+    public int getRowsRead() { return rowsRead; }
+
+    public int getRowsImported() { return rowsImported; }
+
+    public int getRowsRejected() { return rowsRejected; }
+
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    public List<RowError> getErrors() { return errors; }
+
+    /**
+     * @return true when more rows were rejected than errors are listed
+     */
+    public boolean isErrorsTruncated() { return rowsRejected > errors.size(); }
+
+    public static class RowError {
+
+        private final int line;
+
+        private final String message;
+
+        public RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() { return line; }
+
+        public String getMessage() { return message; }
+    }
+}
@@ -0,0 +1,47 @@
+package com.marcuschiu.service.transfer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Newline delimited JSON, one object per line keyed by EmployeeRecords.COLUMNS
+ * unknown keys are ignored, values may be strings or numbers
+ */
+class NdjsonEmployeeRecordReader extends EmployeeRecordReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    NdjsonEmployeeRecordReader(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    protected Map<String, String> parse(String line) {
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new MalformedRecordException("invalid JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new MalformedRecordException("invalid JSON: " + e.getMessage());
+        }
+        if (node == null || !node.isObject()) {
+            throw new MalformedRecordException("expected a JSON object");
+        }
+
+        Map<String, String> record = new HashMap<>();
+        for (String column : EmployeeRecords.COLUMNS) {
+            JsonNode value = node.get(column);
+            if (value != null && !value.isNull()) {
+                record.put(column, value.asText());
+            }
+        }
+        return record;
+    }
+}
@@ -0,0 +1,43 @@
+package com.marcuschiu.service.transfer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * One JSON object per line, written with Jackson's streaming generator
+ * (no tree or map is built per row), null values are left out
+ */
+class NdjsonEmployeeRecordWriter extends EmployeeRecordWriter {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonGenerator generator;
+
+    NdjsonEmployeeRecordWriter(OutputStream out) throws IOException {
+        this.generator = FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        // separates root values with a line break instead of a space
+        this.generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+    }
+
+    @Override
+    public void write(String[] values) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                generator.writeStringField(EmployeeRecords.COLUMNS[i], values[i]);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeRaw('\n');
+        generator.close();
+    }
+}
@@ -0,0 +1,5 @@
+-- optimistic locking version (Employee.version) and last change time (Employee.lastModified)
+-- both serve as validators for conditional GETs (ETag / Last-Modified), rows inserted outside Hibernate
+-- (EmployeeDaoImpl.batchInsert) get the defaults
+ALTER TABLE EMPLOYEE ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE EMPLOYEE ADD COLUMN last_modified TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
@@ -0,0 +1,2 @@
+-- phones are looked up and deleted by employee (Employee.phones, EmployeeDao.deleteByIds)
+CREATE INDEX PHONE_employee_id_index ON PHONE (employee_id);
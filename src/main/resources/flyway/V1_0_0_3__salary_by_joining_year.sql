@@ -0,0 +1,10 @@
+-- headcount and payroll per joining year (SalaryTotals), maintained by EmployeeService in the transaction of every
+-- write, see SalaryTotalsDao; salaries are added rounded to cents so repeated deltas do not drift like DOUBLE sums
+CREATE TABLE SALARY_BY_JOINING_YEAR
+(
+    joining_year INT NOT NULL PRIMARY KEY,
+    headcount INT NOT NULL DEFAULT 0,
+    total_salary DECIMAL(19,2) NOT NULL DEFAULT 0
+);
+INSERT INTO SALARY_BY_JOINING_YEAR (joining_year, headcount, total_salary)
+SELECT YEAR(joining_date), COUNT(*), SUM(ROUND(salary, 2)) FROM EMPLOYEE GROUP BY YEAR(joining_date);
@@ -0,0 +1,27 @@
+-- transactional outbox (EmployeeChangeEvent): EmployeeService appends one row per changed employee in the
+-- transaction of the change, with the row as it was committed (only id and ssn for a deletion);
+-- EmployeeOutboxRelay publishes the rows in id order and records how far it got in OUTBOX_CHECKPOINT
+CREATE TABLE EMPLOYEE_OUTBOX
+(
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    type VARCHAR(10) NOT NULL,
+    employee_id INT NOT NULL,
+    ssn VARCHAR(30) NOT NULL,
+    version INT,
+    name VARCHAR(50),
+    first VARCHAR(50),
+    middle VARCHAR(50),
+    last VARCHAR(50),
+    joining_date DATE,
+    birth_date DATE,
+    salary DOUBLE,
+    text VARCHAR(100),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+-- one row per sink, the id of the last event it was handed
+CREATE TABLE OUTBOX_CHECKPOINT
+(
+    sink VARCHAR(50) NOT NULL PRIMARY KEY,
+    last_event_id BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,8 @@
+-- single row EmployeeOutboxDao locks before appending to EMPLOYEE_OUTBOX and holds until the writing transaction
+-- ends: outbox ids are then taken and committed in the same order, so an id missing below a committed one
+-- belonged to a rolled back transaction and EmployeeOutboxRelay can pass it without waiting
+CREATE TABLE OUTBOX_APPEND_LOCK
+(
+    id INT NOT NULL PRIMARY KEY
+);
+INSERT INTO OUTBOX_APPEND_LOCK (id) VALUES (1);
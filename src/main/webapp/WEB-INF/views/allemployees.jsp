@@ -21,6 +21,8 @@
 </head>
 <body>
     <h2>List of Employees</h2>
+    <!-- estimatedTotal comes from table statistics, so it is approximate (null without statistics) -->
+    <p><c:if test="${page.estimatedTotal != null}">About ${page.estimatedTotal} employees, </c:if>showing up to ${page.size} per page</p>
 
     <table>
         <tr>
@@ -52,8 +54,21 @@
         </c:forEach>
     </table>
 
+    <!-- keyset navigation: cursors are the ids at the edges of this page -->
+    <c:if test="${page.hasPrevious}">
+        <a href="<c:url value='/employees'><c:param name='before' value='${page.previousCursor}'/><c:param name='size' value='${page.size}'/></c:url>">Previous</a>
+    </c:if>
+    <c:if test="${page.hasNext}">
+        <a href="<c:url value='/employees'><c:param name='after' value='${page.nextCursor}'/><c:param name='size' value='${page.size}'/></c:url>">Next</a>
+    </c:if>
+
     <br/>
     <a href="<c:url value='/register' />">Register New Employee</a>
+    <br/>
+    <a href="<c:url value='/employees/import' />">Import Employees</a>
+    <br/>
+    Export Employees as <a href="<c:url value='/employees/export?format=csv' />">CSV</a>
+    or <a href="<c:url value='/employees/export?format=ndjson' />">NDJSON</a>
 
     <br/>
     Go to <a href="<c:url value='/home' />">Home Page</a>
@@ -0,0 +1,58 @@
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ page contentType="text/html;charset=UTF-8" language="java" %>
+<html>
+<head>
+    <meta http-equiv="Content-Type" content="text/html; charset=ISO-8859-1">
+    <title>Import Employees</title>
+
+    <style>
+        .error {
+            color: #ff0000;
+        }
+    </style>
+</head>
+<body>
+    <h2>Import Employees</h2>
+
+    <!-- CSV needs a header line, NDJSON one object per line, both use these column names -->
+    <p>Columns: name, ssn, joiningDate (yyyy-MM-dd), birthDate (yyyy-MM-dd), salary, text, first, middle, last</p>
+
+    <form method="POST" action="<c:url value='/employees/import' />" enctype="multipart/form-data">
+        <input type="file" name="file"/>
+        <select name="format">
+            <option value="">guess from file name</option>
+            <option value="csv">CSV</option>
+            <option value="ndjson">NDJSON</option>
+        </select>
+        <input type="submit" value="Import"/>
+    </form>
+
+    <c:if test="${not empty error}">
+        <p class="error">${error}</p>
+    </c:if>
+
+    <c:if test="${not empty report}">
+        <p>
+            Read ${report.rowsRead} rows in ${report.elapsedMillis} ms:
+            ${report.rowsImported} imported, ${report.rowsRejected} rejected
+        </p>
+        <c:if test="${not empty report.errors}">
+            <table>
+                <tr><td>Line</td><td>Error</td></tr>
+                <c:forEach items="${report.errors}" var="rowError">
+                    <tr>
+                        <td>${rowError.line}</td>
+                        <td class="error"><c:out value="${rowError.message}"/></td>
+                    </tr>
+                </c:forEach>
+            </table>
+            <c:if test="${report.errorsTruncated}">
+                <p>Only the first ${report.errors.size()} errors are listed.</p>
+            </c:if>
+        </c:if>
+    </c:if>
+
+    <br/>
+    Go back to <a href="<c:url value='/employees' />">List of All Employees</a>
+</body>
+</html>
@@ -24,6 +24,10 @@
 
     <form:form method="POST" modelAttribute="employee">
         <form:input type="hidden" path="id" id="id"/>
+        <!-- the version the employee was loaded with, an update based on an older one is refused -->
+        <form:input type="hidden" path="version" id="version"/>
+        <!-- errors of the whole employee, e.g. someone else saved it meanwhile -->
+        <form:errors cssClass="error"/>
         <table>
             <tr>
                 <td><label for="name">Name: </label> </td>